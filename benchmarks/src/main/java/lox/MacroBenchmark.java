@@ -0,0 +1,146 @@
+package lox;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/* runs the programs of the corpus (benchmarks/corpus/*.lox , the classic interpreter benchmarks written in lox) end to end
+ * like the interpreter runs a script (check Lox.runFile) , but in this process so the jit warms up over the iterations .
+ * every program is run some warmup iterations and then some measured ones , each on a fresh interpreter or vm ,
+ * and the runner reports the steady state time (mean and best) , the allocation rate of the running thread and the peak heap .
+ * the output of the programs is thrown away while they run (their results are checked by running them with the interpreter) .
+ * usage : java -cp target/benchmarks.jar lox.MacroBenchmark [--vm] [--warmup n] [--iterations n] [corpus directory or .lox files]
+ */
+public class MacroBenchmark {
+
+	private static final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private static final double MB = 1024 * 1024;
+
+	public static void main(String[] args) throws IOException {
+		boolean useVm = false;
+		int warmup = 5;
+		int iterations = 10;
+		List<File> programs = new ArrayList<>();
+		for(int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+			case "--vm": useVm = true; break;
+			case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+			case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+			default: programs.addAll(programs(new File(args[i])));
+			}
+		}
+		if(programs.isEmpty()) programs.addAll(programs(new File("corpus")));
+		if(programs.isEmpty()) {
+			System.err.println("Usage: java lox.MacroBenchmark [--vm] [--warmup n] [--iterations n] [corpus directory or .lox files]");
+			System.exit(64);
+		}
+
+		System.out.printf("%-16s %12s %12s %14s %14s%n", "program", "mean (ms)", "best (ms)", "alloc (MB/s)", "peak heap (MB)");
+		for(File program : programs) {
+			Result result = measure(program.getPath(), useVm, warmup, iterations);
+			String name = program.getName().replace(".lox", "");
+			System.out.printf("%-16s %12.1f %12.1f %14.1f %14.1f%n", name, result.meanMillis, result.bestMillis,
+					result.allocatedBytes / MB / (result.totalNanos / 1e9), result.peakHeapBytes / MB);
+		}
+	}
+
+	static final class Result {
+		double meanMillis;
+		double bestMillis;
+		long totalNanos;
+		long allocatedBytes;
+		long peakHeapBytes;
+	}
+
+	//the peak heap is the sum of the peaks of the heap pools during the measured iterations , the pools do not peak
+	//at the same time so it is an upper bound , the warmup garbage is collected first so it does not count .
+	static Result measure(String path,boolean useVm,int warmup,int iterations) throws IOException {
+		byte[] source = Files.readAllBytes(new File(path).toPath());
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new NullOutputStream()));
+		try {
+			for(int i = 0; i < warmup; i++) {
+				run(path, source, useVm);
+			}
+			System.gc();
+			List<MemoryPoolMXBean> heap = new ArrayList<>();
+			for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if(pool.getType() == MemoryType.HEAP && pool.isValid()) {
+					pool.resetPeakUsage();
+					heap.add(pool);
+				}
+			}
+			Result result = new Result();
+			result.bestMillis = Double.MAX_VALUE;
+			long threadId = Thread.currentThread().getId();
+			long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+			for(int i = 0; i < iterations; i++) {
+				long start = System.nanoTime();
+				run(path, source, useVm);
+				long elapsed = System.nanoTime() - start;
+				result.totalNanos += elapsed;
+				result.bestMillis = Math.min(result.bestMillis, elapsed / 1e6);
+			}
+			result.allocatedBytes = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+			result.meanMillis = result.totalNanos / 1e6 / iterations;
+			for(MemoryPoolMXBean pool : heap) {
+				result.peakHeapBytes += pool.getPeakUsage().getUsed();
+			}
+			return result;
+		} finally {
+			System.setOut(out);
+		}
+	}
+
+	/* the steps of Lox.runFile on the source read once . Lox.runFile exits the process when the program has an error ,
+	 * here the error fails the benchmark with an exception (run the program with the interpreter to see the error) .
+	 */
+	private static void run(String path,byte[] source,boolean useVm) {
+		Lox.hadError = false;
+		Lox.hadRuntimeError = false;
+		List<Stmt> statements = new Parser(new Scanner(ByteBuffer.wrap(source), Charset.defaultCharset())).parse();
+		if(!Lox.hadError) new Resolver().resolve(statements);
+		if(Lox.hadError) {
+			throw new IllegalStateException("the program " + path + " has errors");
+		}
+		if(useVm) {
+			VM.Function script = new Compiler().compile(statements);
+			if(Lox.hadError) {
+				throw new IllegalStateException("the program " + path + " has errors");
+			}
+			new VM().interpret(script);
+		} else {
+			new Interpreter().interpret(statements);
+		}
+		if(Lox.hadRuntimeError) {
+			throw new IllegalStateException("the program " + path + " fails at runtime");
+		}
+	}
+
+	private static List<File> programs(File file) {
+		if(!file.isDirectory()) return file.isFile() ? Arrays.asList(file) : new ArrayList<File>();
+		File[] files = file.listFiles((dir, name) -> name.endsWith(".lox"));
+		Arrays.sort(files);
+		return Arrays.asList(files);
+	}
+
+	//java 8 has no OutputStream.nullOutputStream .
+	private static final class NullOutputStream extends OutputStream {
+		@Override
+		public void write(int b) {}
+
+		@Override
+		public void write(byte[] b,int off,int len) {}
+	}
+}
@@ -0,0 +1,105 @@
+package lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* measures every phase of the pipeline (check Lox.run) on its own : scanning , parsing , resolving and interpreting .
+ * every phase gets the output of the previous one , made once in setup , so only that phase is timed .
+ * the programs are in the resources (programs/<name>.lox) , they keep their result in a global instead of printing it .
+ * the benchmark is in the lox package because the scanner , the parser and the syntax trees are package private .
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+	@Param({"fib", "loops", "methods", "closures", "strings"})
+	public String program;
+
+	private String source;
+	private TokenBuffer tokens;
+	private List<Stmt> statements;
+	private Interpreter interpreter;
+
+	@Setup
+	public void setup() throws IOException {
+		source = read("/programs/" + program + ".lox");
+		tokens = new Scanner(source).scanAll();
+		statements = new Parser(tokens).parse();
+		interpreter = new Interpreter();
+		new Resolver().resolve(statements);
+		if(Lox.hadError) {
+			throw new IllegalStateException("the program " + program + " has errors");
+		}
+		//a program that fails at runtime would only fail in the measured interpret , so it is run once here .
+		Lox.hadRuntimeError = false;
+		interpreter.interpret(statements);
+		if(Lox.hadRuntimeError) {
+			throw new IllegalStateException("the program " + program + " fails at runtime");
+		}
+		try {
+			result();
+		} catch(RuntimeError e) {
+			throw new IllegalStateException("the program " + program + " does not define result");
+		}
+	}
+
+	@Benchmark
+	public TokenBuffer scan() {
+		return new Scanner(source).scanAll();
+	}
+
+	@Benchmark
+	public List<Stmt> parse() {
+		return new Parser(tokens).parse();
+	}
+
+	//the resolver stores the locations of the locals in the syntax trees , resolving them again stores the same ones .
+	@Benchmark
+	public List<Stmt> resolve() {
+		new Resolver().resolve(statements);
+		return statements;
+	}
+
+	@Benchmark
+	public Object interpret() {
+		interpreter.interpret(statements);
+		return result();
+	}
+
+	private Object result() {
+		return interpreter.global.get(new Token(TokenType.IDENTIFIER, "result", null, 0));
+	}
+
+	static String read(String resource) throws IOException {
+		try(InputStream input = PipelineBenchmark.class.getResourceAsStream(resource)) {
+			if(input == null) throw new IOException("no resource " + resource);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while((read = input.read(buffer)) != -1) {
+				bytes.write(buffer, 0, read);
+			}
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+}
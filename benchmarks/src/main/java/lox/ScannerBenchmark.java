@@ -0,0 +1,76 @@
+package lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* the throughput of the scanner on a large source , like the generated scripts that go through Lox.runFile .
+ * the source is the programs of the pipeline benchmarks (programs/<name>.lox) repeated until it has the given size ,
+ * every operation scans all of it , so the megabytes scanned per second are the operations per second times the size .
+ * scanTokens makes a Token for every token , scanAll keeps them in a TokenBuffer and stream scans the utf-8 bytes
+ * one token at a time (check Scanner.nextToken) like runFile does with the mapped file .
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScannerBenchmark {
+
+	private static final String[] PROGRAMS = {"fib", "loops", "methods", "closures", "strings"};
+
+	@Param({"1024"})
+	public int kilobytes;
+
+	private String source;
+	private byte[] bytes;
+
+	@Setup
+	public void setup() throws IOException {
+		StringBuilder programs = new StringBuilder();
+		for(String program : PROGRAMS) {
+			programs.append(PipelineBenchmark.read("/programs/" + program + ".lox")).append('\n');
+		}
+		StringBuilder source = new StringBuilder();
+		while(source.length() < kilobytes * 1024) {
+			source.append(programs);
+		}
+		this.source = source.toString();
+		this.bytes = this.source.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public List<Token> scanTokens() {
+		return new Scanner(source).scanTokens();
+	}
+
+	@Benchmark
+	public TokenBuffer scanAll() {
+		return new Scanner(source).scanAll();
+	}
+
+	@Benchmark
+	public int stream() {
+		Scanner scanner = new Scanner(ByteBuffer.wrap(bytes), StandardCharsets.UTF_8);
+		int count = 0;
+		while(scanner.nextToken().type != TokenType.EOF) {
+			count++;
+		}
+		return count;
+	}
+}
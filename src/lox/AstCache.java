@@ -0,0 +1,683 @@
+package lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* a cache of resolved syntax trees on disk , so a script that did not change skips the scanner , the parser and the resolver (check Lox.runFile) .
+ * an entry is named by the hash of the source (check key) and holds the statements in a compact binary form : a node is a tag
+ * and its fields , with what the resolver stored in it (the locations of the locals , the captures , the boxed and elided flags ...) .
+ * the runtime state of the nodes (inline caches , shapes , specialized operators , global indexes) is not stored , it starts empty .
+ * every string (lexemes , literals) is written once and then referred to by its index , it is interned when it is read
+ * so the names are the symbols the scanner would have made (check Symbols) .
+ * an entry that can not be read (another FORMAT , a truncated file) is ignored and the script is parsed again .
+ */
+final class AstCache {
+	//"LOXC" , the first bytes of every entry .
+	private static final int MAGIC = 0x4c4f5843;
+	//changes whenever the syntax trees or the way they are written change , so the entries of older versions are not read .
+	private static final int FORMAT = 1;
+	private static final TokenType[] TYPES = TokenType.values();
+
+	private static final int NULL = 0;
+	private static final int BINARY = 1, ASSIGN = 2, GROUPING = 3, LITERAL = 4, UNARY = 5, TERNARY = 6, VARIABLE = 7,
+			LOGICAL = 8, CALL = 9, FUN_EXPR = 10, GET = 11, SET = 12, THIS = 13, SUPER = 14;
+	private static final int EXPRESSION = 1, BLOCK = 2, FUNCTION = 3, CLASS = 4, IF = 5, PRINT = 6, VAR = 7, WHILE = 8,
+			BREAK = 9, CONTINUE = 10, RETURN = 11;
+	private static final int NIL_VALUE = 0, FALSE_VALUE = 1, TRUE_VALUE = 2, NUMBER_VALUE = 3, STRING_VALUE = 4;
+
+	private AstCache() {}
+
+	//the name of the entry of a source : the sha-256 of its bytes and of the charset that decodes them , in hex .
+	static String key(ByteBuffer source,Charset charset) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update(charset.name().getBytes(StandardCharsets.UTF_8));
+		digest.update(source.duplicate());
+		StringBuilder key = new StringBuilder();
+		for(byte b : digest.digest()) {
+			key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return key.toString();
+	}
+
+	//the statements of the entry , null when there is no entry or it can not be read .
+	static List<Stmt> load(Path entry) {
+		if(!Files.isRegularFile(entry)) return null;
+		try {
+			return new Reader(ByteBuffer.wrap(Files.readAllBytes(entry))).statements();
+		} catch(IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/* writes the entry , the file is written beside it and then moved in place so a script that runs at the same time
+	 * never reads half an entry . the cache is only an optimization , an entry that can not be written is skipped .
+	 */
+	static void store(Path entry,List<Stmt> statements) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			new Writer(new DataOutputStream(bytes)).statements(statements);
+			Path directory = entry.toAbsolutePath().getParent();
+			Files.createDirectories(directory);
+			Path temporary = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+			try {
+				try(OutputStream output = Files.newOutputStream(temporary)) {
+					bytes.writeTo(output);
+				}
+				Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+		} catch(IOException | UncheckedIOException e) {
+			//the script runs from the tree it just parsed .
+		}
+	}
+
+	private static final class Writer implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+		private final DataOutputStream out;
+		private final Map<String,Integer> strings = new HashMap<>();
+		//the line of the last token , a token is written with the difference (most tokens are on the line of the one before) .
+		private int line = 0;
+
+		Writer(DataOutputStream out) {
+			this.out = out;
+		}
+
+		void statements(List<Stmt> statements) throws IOException {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT);
+			stmts(statements);
+			out.flush();
+		}
+
+		private void tag(int tag) {
+			size(tag);
+		}
+
+		//a non negative int in 7 bits groups , most of them (tags , slots , counts , string indexes) take one byte .
+		//the visitors can not throw an IOException , it goes through them unchecked .
+		private void size(int value) {
+			try {
+				while((value & ~0x7f) != 0) {
+					out.writeByte((value & 0x7f) | 0x80);
+					value >>>= 7;
+				}
+				out.writeByte(value);
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void bool(boolean value) {
+			size(value ? 1 : 0);
+		}
+
+		//a string is written the first time with its index , after that only its index .
+		private void string(String value) {
+			Integer index = strings.get(value);
+			if(index != null) {
+				size(index);
+				return;
+			}
+			size(strings.size());
+			strings.put(value, strings.size());
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			size(bytes.length);
+			try {
+				out.write(bytes);
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void value(Object value) {
+			if(value == null) {
+				tag(NIL_VALUE);
+			} else if(value instanceof Boolean) {
+				tag((Boolean) value ? TRUE_VALUE : FALSE_VALUE);
+			} else if(value instanceof Double) {
+				tag(NUMBER_VALUE);
+				try {
+					out.writeDouble((Double) value);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			} else {
+				tag(STRING_VALUE);
+				string((String) value);
+			}
+		}
+
+		private void token(Token token) {
+			size(token.type.ordinal());
+			string(token.lexeme);
+			value(token.literal);
+			signed(token.line - line);
+			line = token.line;
+		}
+
+		private void tokens(List<Token> tokens) {
+			size(tokens.size());
+			for(Token token : tokens) token(token);
+		}
+
+		//0 for no location , else 1 + the location (a slot or -1 - i for an upvalue , check Location) in zigzag and the boxed flag in the lowest bit .
+		private void location(Location location) {
+			if(location == null) {
+				size(0);
+				return;
+			}
+			int slot = location.upvalue ? -1 - location.slot : location.slot;
+			size(1 + ((zigzag(slot) << 1) | (location.boxed ? 1 : 0)));
+		}
+
+		//the captures are slots or -1 - i for upvalues .
+		private void ints(int[] values) {
+			size(values.length);
+			for(int value : values) signed(value);
+		}
+
+		private void signed(int value) {
+			size(zigzag(value));
+		}
+
+		//0 , -1 , 1 , -2 ... are written as 0 , 1 , 2 , 3 ... so the small negative ints take one byte too .
+		private static int zigzag(int value) {
+			return (value << 1) ^ (value >> 31);
+		}
+
+		private void expr(Expr expr) {
+			if(expr == null) tag(NULL);
+			else expr.accept(this);
+		}
+
+		private void exprs(List<Expr> exprs) {
+			size(exprs.size());
+			for(Expr expr : exprs) expr(expr);
+		}
+
+		private void stmt(Stmt stmt) {
+			if(stmt == null) tag(NULL);
+			else stmt.accept(this);
+		}
+
+		private void stmts(List<? extends Stmt> stmts) {
+			size(stmts.size());
+			for(Stmt stmt : stmts) stmt(stmt);
+		}
+
+		@Override
+		public Void visitBinaryExpr(Expr.Binary expr) {
+			tag(BINARY);
+			expr(expr.left);
+			token(expr.operator);
+			expr(expr.right);
+			return null;
+		}
+
+		@Override
+		public Void visitAssignExpr(Expr.Assign expr) {
+			tag(ASSIGN);
+			token(expr.name);
+			expr(expr.value);
+			location(expr.local);
+			return null;
+		}
+
+		@Override
+		public Void visitGroupingExpr(Expr.Grouping expr) {
+			tag(GROUPING);
+			expr(expr.expression);
+			return null;
+		}
+
+		@Override
+		public Void visitLiteralExpr(Expr.Literal expr) {
+			tag(LITERAL);
+			value(expr.value);
+			return null;
+		}
+
+		@Override
+		public Void visitUnaryExpr(Expr.Unary expr) {
+			tag(UNARY);
+			token(expr.operator);
+			expr(expr.right);
+			return null;
+		}
+
+		@Override
+		public Void visitTernaryExpr(Expr.Ternary expr) {
+			tag(TERNARY);
+			expr(expr.condition);
+			expr(expr.first);
+			expr(expr.second);
+			return null;
+		}
+
+		@Override
+		public Void visitVariableExpr(Expr.Variable expr) {
+			tag(VARIABLE);
+			token(expr.name);
+			location(expr.local);
+			return null;
+		}
+
+		@Override
+		public Void visitLogicalExpr(Expr.Logical expr) {
+			tag(LOGICAL);
+			expr(expr.left);
+			token(expr.operator);
+			expr(expr.right);
+			return null;
+		}
+
+		@Override
+		public Void visitCallExpr(Expr.Call expr) {
+			tag(CALL);
+			expr(expr.calle);
+			token(expr.paren);
+			exprs(expr.args);
+			return null;
+		}
+
+		@Override
+		public Void visitFunExprExpr(Expr.FunExpr expr) {
+			tag(FUN_EXPR);
+			token(expr.paren);
+			tokens(expr.parameters);
+			stmts(expr.body);
+			ints(expr.captures);
+			ints(expr.boxedParameters);
+			return null;
+		}
+
+		@Override
+		public Void visitGetExpr(Expr.Get expr) {
+			tag(GET);
+			expr(expr.object);
+			token(expr.name);
+			return null;
+		}
+
+		@Override
+		public Void visitSetExpr(Expr.Set expr) {
+			tag(SET);
+			expr(expr.object);
+			token(expr.name);
+			expr(expr.value);
+			return null;
+		}
+
+		@Override
+		public Void visitThisExpr(Expr.This expr) {
+			tag(THIS);
+			token(expr.keyword);
+			location(expr.local);
+			return null;
+		}
+
+		@Override
+		public Void visitSuperExpr(Expr.Super expr) {
+			tag(SUPER);
+			token(expr.keyword);
+			token(expr.method);
+			location(expr.local);
+			location(expr.receiver);
+			return null;
+		}
+
+		@Override
+		public Void visitExpressionStmt(Stmt.Expression stmt) {
+			tag(EXPRESSION);
+			expr(stmt.expression);
+			return null;
+		}
+
+		@Override
+		public Void visitBlockStmt(Stmt.Block stmt) {
+			tag(BLOCK);
+			token(stmt.paren);
+			stmts(stmt.statements);
+			bool(stmt.elided);
+			return null;
+		}
+
+		@Override
+		public Void visitFunctionStmt(Stmt.Function stmt) {
+			tag(FUNCTION);
+			token(stmt.name);
+			tokens(stmt.parameters);
+			stmts(stmt.body);
+			ints(stmt.captures);
+			ints(stmt.boxedParameters);
+			bool(stmt.boxed);
+			return null;
+		}
+
+		@Override
+		public Void visitClassStmt(Stmt.Class stmt) {
+			tag(CLASS);
+			token(stmt.name);
+			expr(stmt.superClass);
+			stmts(stmt.methods);
+			stmts(stmt.staticMethods);
+			bool(stmt.boxed);
+			return null;
+		}
+
+		@Override
+		public Void visitIfStmt(Stmt.If stmt) {
+			tag(IF);
+			expr(stmt.condition);
+			stmt(stmt.thenStmt);
+			stmt(stmt.elseStmt);
+			return null;
+		}
+
+		@Override
+		public Void visitPrintStmt(Stmt.Print stmt) {
+			tag(PRINT);
+			expr(stmt.expression);
+			return null;
+		}
+
+		@Override
+		public Void visitVarStmt(Stmt.Var stmt) {
+			tag(VAR);
+			token(stmt.name);
+			expr(stmt.initializer);
+			bool(stmt.boxed);
+			return null;
+		}
+
+		@Override
+		public Void visitWhileStmt(Stmt.While stmt) {
+			tag(WHILE);
+			expr(stmt.condition);
+			stmt(stmt.Body);
+			return null;
+		}
+
+		@Override
+		public Void visitBreakStmt(Stmt.Break stmt) {
+			tag(BREAK);
+			token(stmt.name);
+			return null;
+		}
+
+		@Override
+		public Void visitContinueStmt(Stmt.Continue stmt) {
+			tag(CONTINUE);
+			token(stmt.name);
+			return null;
+		}
+
+		@Override
+		public Void visitReturnStmt(Stmt.Return stmt) {
+			tag(RETURN);
+			token(stmt.keyword);
+			expr(stmt.value);
+			bool(stmt.tailCall);
+			return null;
+		}
+	}
+
+	//reads what the Writer wrote , in the same order .
+	private static final class Reader {
+		private final ByteBuffer in;
+		private final List<String> strings = new ArrayList<>();
+		private int line = 0;
+
+		Reader(ByteBuffer in) {
+			this.in = in;
+		}
+
+		List<Stmt> statements() throws IOException {
+			if(in.getInt() != MAGIC || in.getInt() != FORMAT) return null;
+			List<Stmt> statements = stmts();
+			if(in.hasRemaining()) return null;
+			return statements;
+		}
+
+		private int size() throws IOException {
+			int value = 0;
+			for(int shift = 0; ; shift += 7) {
+				int b = in.get() & 0xff;
+				value |= (b & 0x7f) << shift;
+				if((b & 0x80) == 0) return value;
+				if(shift > 28) throw new IOException("Malformed size.");
+			}
+		}
+
+		private boolean bool() throws IOException {
+			return size() != 0;
+		}
+
+		private int signed() throws IOException {
+			return unzigzag(size());
+		}
+
+		private static int unzigzag(int value) {
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		private String string() throws IOException {
+			int index = size();
+			if(index < strings.size()) return strings.get(index);
+			if(index != strings.size()) throw new IOException("Malformed string index.");
+			int length = size();
+			String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8).intern();
+			in.position(in.position() + length);
+			strings.add(value);
+			return value;
+		}
+
+		private Object value() throws IOException {
+			switch(size()) {
+			case NIL_VALUE: return null;
+			case FALSE_VALUE: return false;
+			case TRUE_VALUE: return true;
+			case NUMBER_VALUE: return in.getDouble();
+			case STRING_VALUE: return string();
+			default: throw new IOException("Malformed value.");
+			}
+		}
+
+		private Token token() throws IOException {
+			TokenType type = TYPES[size()];
+			String lexeme = string();
+			Object literal = value();
+			line += signed();
+			return new Token(type, lexeme, literal, line);
+		}
+
+		private List<Token> tokens() throws IOException {
+			int count = size();
+			List<Token> tokens = new ArrayList<>(count);
+			for(int i = 0; i < count; i++) tokens.add(token());
+			return tokens;
+		}
+
+		private Location location() throws IOException {
+			int value = size();
+			if(value == 0) return null;
+			return new Location(unzigzag((value - 1) >>> 1), ((value - 1) & 1) != 0);
+		}
+
+		private int[] ints() throws IOException {
+			int[] values = new int[size()];
+			for(int i = 0; i < values.length; i++) {
+				values[i] = signed();
+			}
+			return values;
+		}
+
+		private List<Expr> exprs() throws IOException {
+			int count = size();
+			List<Expr> exprs = new ArrayList<>(count);
+			for(int i = 0; i < count; i++) exprs.add(expr());
+			return exprs;
+		}
+
+		private List<Stmt> stmts() throws IOException {
+			int count = size();
+			List<Stmt> stmts = new ArrayList<>(count);
+			for(int i = 0; i < count; i++) stmts.add(stmt());
+			return stmts;
+		}
+
+		private List<Stmt.Function> functions() throws IOException {
+			int count = size();
+			List<Stmt.Function> functions = new ArrayList<>(count);
+			for(int i = 0; i < count; i++) functions.add((Stmt.Function) stmt());
+			return functions;
+		}
+
+		private Expr expr() throws IOException {
+			switch(size()) {
+			case NULL: return null;
+			case BINARY: {
+				Expr left = expr();
+				Token operator = token();
+				return new Expr.Binary(left, operator, expr());
+			}
+			case ASSIGN: {
+				Expr.Assign expr = new Expr.Assign(token(), expr());
+				expr.local = location();
+				return expr;
+			}
+			case GROUPING: return new Expr.Grouping(expr());
+			case LITERAL: return new Expr.Literal(value());
+			case UNARY: {
+				Token operator = token();
+				return new Expr.Unary(operator, expr());
+			}
+			case TERNARY: {
+				Expr condition = expr();
+				Expr first = expr();
+				return new Expr.Ternary(condition, first, expr());
+			}
+			case VARIABLE: {
+				Expr.Variable expr = new Expr.Variable(token());
+				expr.local = location();
+				return expr;
+			}
+			case LOGICAL: {
+				Expr left = expr();
+				Token operator = token();
+				return new Expr.Logical(left, operator, expr());
+			}
+			case CALL: {
+				Expr callee = expr();
+				Token paren = token();
+				return new Expr.Call(callee, paren, exprs());
+			}
+			case FUN_EXPR: {
+				Token paren = token();
+				List<Token> parameters = tokens();
+				Expr.FunExpr expr = new Expr.FunExpr(paren, parameters, stmts());
+				expr.captures = ints();
+				expr.boxedParameters = ints();
+				return expr;
+			}
+			case GET: {
+				Expr object = expr();
+				return new Expr.Get(object, token());
+			}
+			case SET: {
+				Expr object = expr();
+				Token name = token();
+				return new Expr.Set(object, name, expr());
+			}
+			case THIS: {
+				Expr.This expr = new Expr.This(token());
+				expr.local = location();
+				return expr;
+			}
+			case SUPER: {
+				Token keyword = token();
+				Expr.Super expr = new Expr.Super(keyword, token());
+				expr.local = location();
+				expr.receiver = location();
+				return expr;
+			}
+			default: throw new IOException("Malformed expression.");
+			}
+		}
+
+		private Stmt stmt() throws IOException {
+			switch(size()) {
+			case NULL: return null;
+			case EXPRESSION: return new Stmt.Expression(expr());
+			case BLOCK: {
+				Token paren = token();
+				Stmt.Block stmt = new Stmt.Block(paren, stmts());
+				stmt.elided = bool();
+				return stmt;
+			}
+			case FUNCTION: {
+				Token name = token();
+				List<Token> parameters = tokens();
+				Stmt.Function stmt = new Stmt.Function(name, parameters, stmts());
+				stmt.captures = ints();
+				stmt.boxedParameters = ints();
+				stmt.boxed = bool();
+				return stmt;
+			}
+			case CLASS: {
+				Token name = token();
+				Expr.Variable superClass = (Expr.Variable) expr();
+				List<Stmt.Function> methods = functions();
+				Stmt.Class stmt = new Stmt.Class(name, superClass, methods, functions());
+				stmt.boxed = bool();
+				return stmt;
+			}
+			case IF: {
+				Expr condition = expr();
+				Stmt thenStmt = stmt();
+				return new Stmt.If(condition, thenStmt, stmt());
+			}
+			case PRINT: return new Stmt.Print(expr());
+			case VAR: {
+				Token name = token();
+				Stmt.Var stmt = new Stmt.Var(name, expr());
+				stmt.boxed = bool();
+				return stmt;
+			}
+			case WHILE: {
+				Expr condition = expr();
+				return new Stmt.While(condition, stmt());
+			}
+			case BREAK: return new Stmt.Break(token());
+			case CONTINUE: return new Stmt.Continue(token());
+			case RETURN: {
+				Token keyword = token();
+				Stmt.Return stmt = new Stmt.Return(keyword, expr());
+				stmt.tailCall = bool();
+				return stmt;
+			}
+			default: throw new IOException("Malformed statement.");
+			}
+		}
+	}
+}
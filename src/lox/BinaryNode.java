@@ -0,0 +1,137 @@
+package lox;
+
+/* the executable part of a binary expression (check Expr.Binary.node) .
+ * every binary expression starts with the UNINITIALIZED node , the first time it is evaluated it looks at the types of the operands
+ * and replaces itself with a node specialized for them (e.g. adding two numbers) that does not check the operator again .
+ * a specialized node still checks that its guess holds , when it does not (a speculation failed) the expression is rewritten to
+ * the GENERIC node which handles every type like the interpreter always did , so an expression is specialized at most once .
+ * the nodes have no state so they are shared by all the expressions .
+ * the nodes are the constants of this enum and execute switches on them , a class per node would make the call megamorphic .
+ */
+enum BinaryNode {
+	UNINITIALIZED,
+	GENERIC,
+	COMMA,
+	STRING_CONCAT,
+	NUMBER_ADD,
+	NUMBER_SUBTRACT,
+	NUMBER_MULTIPLY,
+	NUMBER_DIVIDE,
+	NUMBER_GREATER,
+	NUMBER_GREATER_EQUAL,
+	NUMBER_LESS,
+	NUMBER_LESS_EQUAL;
+
+	//evaluates the operands (left first) and applies the operator of the node to them .
+	//the operands of the number nodes are evaluated as primitives (check executeNumber) , only the result is boxed .
+	Object execute(Interpreter interpreter,Expr.Binary expr) {
+		switch(this) {
+		case NUMBER_ADD: case NUMBER_SUBTRACT: case NUMBER_MULTIPLY: case NUMBER_DIVIDE:
+			try {
+				return executeNumber(interpreter, expr);
+			} catch(UnexpectedResult e) {
+				return e.value;
+			}
+		case NUMBER_GREATER: case NUMBER_GREATER_EQUAL: case NUMBER_LESS: case NUMBER_LESS_EQUAL:
+			double a;
+			try {
+				a = interpreter.evaluateNumber(expr.left);
+			} catch(UnexpectedResult e) {
+				return fallback(interpreter, expr, e.value, expr.right.accept(interpreter));
+			}
+			double b;
+			try {
+				b = interpreter.evaluateNumber(expr.right);
+			} catch(UnexpectedResult e) {
+				return fallback(interpreter, expr, a, e.value);
+			}
+			switch(this) {
+			case NUMBER_GREATER: return a > b;
+			case NUMBER_GREATER_EQUAL: return a >= b;
+			case NUMBER_LESS: return a < b;
+			default: return a <= b;
+			}
+		default:
+			break;
+		}
+		Object left = expr.left.accept(interpreter);
+		Object right = expr.right.accept(interpreter);
+		BinaryNode node = this;
+		if(node == UNINITIALIZED) {
+			node = specialize(expr.operator.type,left,right);
+			expr.node = node;
+		}
+		switch(node) {
+		case COMMA:
+			return right;
+		case STRING_CONCAT:
+			if(left instanceof String && right instanceof String) return (String) left + (String) right;
+			return fallback(interpreter, expr, left, right);
+		default:
+			//the first evaluation of an expression (even a numeric one) and the generic node .
+			return interpreter.binary(expr.operator, left, right);
+		}
+	}
+
+	boolean isArithmetic() {
+		return this == NUMBER_ADD || this == NUMBER_SUBTRACT || this == NUMBER_MULTIPLY || this == NUMBER_DIVIDE;
+	}
+
+	/* the operands are evaluated as primitive numbers so none of the intermediate results of a numeric expression is boxed ,
+	 * when an operand is not a number the expression is rewritten to the generic node and if its result is not a number either
+	 * it is thrown to the caller in an UnexpectedResult .
+	 */
+	double executeNumber(Interpreter interpreter,Expr.Binary expr) {
+		double left;
+		try {
+			left = interpreter.evaluateNumber(expr.left);
+		} catch(UnexpectedResult e) {
+			return number(fallback(interpreter, expr, e.value, expr.right.accept(interpreter)));
+		}
+		double right;
+		try {
+			right = interpreter.evaluateNumber(expr.right);
+		} catch(UnexpectedResult e) {
+			return number(fallback(interpreter, expr, left, e.value));
+		}
+		switch(this) {
+		case NUMBER_ADD: return left + right;
+		case NUMBER_SUBTRACT: return left - right;
+		case NUMBER_MULTIPLY: return left * right;
+		default:
+			//division by zero is not a failed speculation , the generic operator reports it .
+			if(right == 0) return number(interpreter.binary(expr.operator, left, right));
+			return left / right;
+		}
+	}
+
+	//the speculation of this node failed , the expression uses the generic node from now on .
+	private static Object fallback(Interpreter interpreter,Expr.Binary expr,Object left,Object right) {
+		expr.node = GENERIC;
+		return interpreter.binary(expr.operator, left, right);
+	}
+
+	private static double number(Object value) {
+		if(value instanceof Double) return (double) value;
+		throw new UnexpectedResult(value);
+	}
+
+	static BinaryNode specialize(TokenType operator,Object left,Object right) {
+		if(operator == TokenType.COMMA) return COMMA;
+		if(left instanceof String && right instanceof String) {
+			return operator == TokenType.PLUS ? STRING_CONCAT : GENERIC;
+		}
+		if(!(left instanceof Double && right instanceof Double)) return GENERIC;
+		switch(operator) {
+		case PLUS: return NUMBER_ADD;
+		case MINUS: return NUMBER_SUBTRACT;
+		case STAR: return NUMBER_MULTIPLY;
+		case SLASH: return NUMBER_DIVIDE;
+		case GREATER: return NUMBER_GREATER;
+		case GREATER_EQUAL: return NUMBER_GREATER_EQUAL;
+		case LESS: return NUMBER_LESS;
+		case LESS_EQUAL: return NUMBER_LESS_EQUAL;
+		default: return GENERIC;
+		}
+	}
+}
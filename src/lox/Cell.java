@@ -0,0 +1,12 @@
+package lox;
+
+/* the box of a local that a closure captures and that is assigned (an upvalue) , the slot of the local holds the box
+ * and the closures share it so they all see the assignments (check Resolver.Declaration) .
+ */
+final class Cell {
+	Object value; 
+
+	Cell(Object value){
+		this.value = value; 
+	}
+}
@@ -0,0 +1,56 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* a chunk is the compiled body of one function : the bytecode , the source line of every byte (for runtime errors)
+ * and the constant pool (numbers , strings , names and compiled functions) that the instructions refer to by index .
+ */
+class Chunk {
+	byte[] code = new byte[16];
+	int[] lines = new int[16];
+	int count = 0;
+	Object[] constants;
+	private final List<Object> pool = new ArrayList<>();
+	private final Map<Object,Integer> indexes = new HashMap<>();
+
+	void write(int value,int line) {
+		if(count == code.length) {
+			byte[] grownCode = new byte[count * 2];
+			int[] grownLines = new int[count * 2];
+			System.arraycopy(code, 0, grownCode, 0, count);
+			System.arraycopy(lines, 0, grownLines, 0, count);
+			code = grownCode;
+			lines = grownLines;
+		}
+		code[count] = (byte) value;
+		lines[count] = line;
+		count++;
+	}
+
+	//numbers , strings and names are shared in the pool , functions are always added .
+	int addConstant(Object value) {
+		if(value instanceof VM.Function) {
+			pool.add(value);
+			return pool.size() - 1;
+		}
+		Integer index = indexes.get(value);
+		if(index == null) {
+			pool.add(value);
+			index = pool.size() - 1;
+			indexes.put(value, index);
+		}
+		return index;
+	}
+
+	int constantCount() {
+		return pool.size();
+	}
+
+	//called once the function is compiled , the VM reads the constants from a plain array .
+	void seal() {
+		constants = pool.toArray();
+	}
+}
@@ -0,0 +1,746 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lox.Expr.Assign;
+import lox.Expr.Binary;
+import lox.Expr.Call;
+import lox.Expr.FunExpr;
+import lox.Expr.Get;
+import lox.Expr.Grouping;
+import lox.Expr.Literal;
+import lox.Expr.Logical;
+import lox.Expr.Set;
+import lox.Expr.Super;
+import lox.Expr.Ternary;
+import lox.Expr.This;
+import lox.Expr.Unary;
+import lox.Expr.Variable;
+import lox.Stmt.Block;
+import lox.Stmt.Break;
+import lox.Stmt.Class;
+import lox.Stmt.Continue;
+import lox.Stmt.Expression;
+import lox.Stmt.Function;
+import lox.Stmt.If;
+import lox.Stmt.Print;
+import lox.Stmt.Return;
+import lox.Stmt.Var;
+import lox.Stmt.While;
+
+/* compiles the syntax trees (after they pass the resolver) into bytecode for the VM .
+ * every function (and the script itself) becomes a VM.Function with its own chunk .
+ * locals live on the VM stack so the compiler keeps track of them to know their slots , a local that is used by an inner function
+ * is captured as an upvalue . names that are not locals are globals and they are looked up by name at runtime (late binding).
+ */
+class Compiler implements Expr.Visitor<Void>,Stmt.Visitor<Void> {
+	private static final int MAX_LOCALS = 256;
+	private static final int MAX_UPVALUES = 256;
+
+	private enum FunctionType {
+		SCRIPT,
+		FUNCTION,
+		METHOD,
+		INIT
+	}
+
+	private static class Local {
+		final String name;
+		int depth;
+		boolean isCaptured = false;
+
+		Local(String name,int depth){
+			this.name = name;
+			this.depth = depth;
+		}
+	}
+
+	private static class Upvalue {
+		final int index;
+		final boolean isLocal;
+
+		Upvalue(int index,boolean isLocal){
+			this.index = index;
+			this.isLocal = isLocal;
+		}
+	}
+
+	private static class Loop {
+		final Loop enclosing;
+		final int start;
+		final int scopeDepth;
+		final List<Integer> breaks = new ArrayList<>();
+
+		Loop(Loop enclosing,int start,int scopeDepth){
+			this.enclosing = enclosing;
+			this.start = start;
+			this.scopeDepth = scopeDepth;
+		}
+	}
+
+	//a block inside a loop , 'continue' leaves the innermost block (same as the interpreter) so it jumps to its end .
+	private static class BlockScope {
+		final BlockScope enclosing;
+		final int scopeDepth;
+		final List<Integer> continues = new ArrayList<>();
+
+		BlockScope(BlockScope enclosing,int scopeDepth){
+			this.enclosing = enclosing;
+			this.scopeDepth = scopeDepth;
+		}
+	}
+
+	//the state of the function being compiled , enclosing is the function it is nested in .
+	private static class FunctionState {
+		final FunctionState enclosing;
+		final VM.Function function;
+		final FunctionType type;
+		final List<Local> locals = new ArrayList<>();
+		final List<Upvalue> upvalues = new ArrayList<>();
+		int scopeDepth = 0;
+		int stackDepth = 1;
+		Loop loop = null;
+		BlockScope block = null;
+
+		FunctionState(FunctionState enclosing,VM.Function function,FunctionType type){
+			this.enclosing = enclosing;
+			this.function = function;
+			this.type = type;
+			//slot zero holds the receiver in methods and the called function otherwise .
+			locals.add(new Local(type == FunctionType.METHOD || type == FunctionType.INIT ? "this" : "",0));
+		}
+	}
+
+	private FunctionState current = null;
+	private int line = 1;
+
+	/* compiles a whole script into a function with no parameters .
+	 * if the script is only expression statements (the usual case in the shell) it returns the value of the last one like the interpreter does .
+	 */
+	VM.Function compile(List<Stmt> statements) {
+		current = new FunctionState(null,new VM.Function("script",0),FunctionType.SCRIPT);
+		boolean onlyExpressions = !statements.isEmpty();
+		for(Stmt stmt : statements) {
+			if(!(stmt instanceof Stmt.Expression)) onlyExpressions = false;
+		}
+		for(int i = 0; i < statements.size(); i++) {
+			Stmt stmt = statements.get(i);
+			if(onlyExpressions && i == statements.size() - 1) {
+				compile(((Stmt.Expression) stmt).expression);
+				emit(OpCode.RETURN);
+			} else {
+				compile(stmt);
+			}
+		}
+		return endFunction().function;
+	}
+
+	private void compile(Stmt stmt) {
+		stmt.accept(this);
+	}
+
+	private void compile(Expr expr) {
+		expr.accept(this);
+	}
+
+	private Chunk chunk() {
+		return current.function.chunk;
+	}
+
+	//Emitting bytecode
+	private void emitByte(int value) {
+		chunk().write(value, line);
+	}
+
+	private void emit(int op) {
+		emitByte(op);
+		adjustStack(STACK_EFFECT[op]);
+	}
+
+	private void emit(int op,int operand) {
+		emit(op);
+		emitByte(operand);
+	}
+
+	private void emitShort(int op,int operand) {
+		emit(op);
+		emitByte((operand >> 8) & 0xff);
+		emitByte(operand & 0xff);
+	}
+
+	/* the compiler follows how many values the function keeps on the stack so the VM can reserve the stack of a frame once when it is called .
+	 * calls and invokes depend on the number of arguments so their effect is adjusted where they are emitted .
+	 */
+	private static final int[] STACK_EFFECT = new int[OpCode.STATIC_METHOD + 1];
+	static {
+		int[] pushes = {OpCode.CONSTANT,OpCode.NIL,OpCode.TRUE,OpCode.FALSE,OpCode.GET_LOCAL,OpCode.GET_GLOBAL,OpCode.GET_UPVALUE,OpCode.CLOSURE,OpCode.CLASS};
+		int[] pops = {OpCode.POP,OpCode.DEFINE_GLOBAL,OpCode.SET_PROPERTY,OpCode.GET_SUPER,OpCode.EQUAL,OpCode.NOT_EQUAL,OpCode.GREATER,OpCode.GREATER_EQUAL,
+				OpCode.LESS,OpCode.LESS_EQUAL,OpCode.ADD,OpCode.SUBTRACT,OpCode.MULTIPLY,OpCode.DIVIDE,OpCode.BITWISE_AND,OpCode.BITWISE_OR,OpCode.XOR,
+				OpCode.PRINT,OpCode.CLOSE_UPVALUE,OpCode.RETURN,OpCode.INHERIT,OpCode.METHOD,OpCode.STATIC_METHOD};
+		for(int op : pushes) STACK_EFFECT[op] = 1;
+		for(int op : pops) STACK_EFFECT[op] = -1;
+	}
+
+	private void adjustStack(int effect) {
+		current.stackDepth += effect;
+		if(current.stackDepth > current.function.maxStack) {
+			current.function.maxStack = current.stackDepth;
+		}
+	}
+
+	private int constant(Object value) {
+		int index = chunk().addConstant(value);
+		if(index > 0xffff) {
+			Lox.error(line, "Too many constants in one function.");
+			return 0;
+		}
+		return index;
+	}
+
+	private void emitReturn() {
+		if(current.type == FunctionType.INIT) {
+			emit(OpCode.GET_LOCAL,0);
+		} else {
+			emit(OpCode.NIL);
+		}
+		emit(OpCode.RETURN);
+	}
+
+	private int emitJump(int op) {
+		emitShort(op,0xffff);
+		return chunk().count - 2;
+	}
+
+	private void patchJump(int offset) {
+		int jump = chunk().count - offset - 2;
+		if(jump > 0xffff) {
+			Lox.error(line, "Too much code to jump over.");
+		}
+		chunk().code[offset] = (byte) ((jump >> 8) & 0xff);
+		chunk().code[offset + 1] = (byte) (jump & 0xff);
+	}
+
+	private void emitLoop(int start) {
+		int offset = chunk().count - start + 3;
+		if(offset > 0xffff) {
+			Lox.error(line, "Loop body too large.");
+		}
+		emitShort(OpCode.LOOP,offset);
+	}
+
+	private FunctionState endFunction() {
+		emitReturn();
+		FunctionState state = current;
+		state.function.upvalueCount = state.upvalues.size();
+		state.function.chunk.seal();
+		current = current.enclosing;
+		return state;
+	}
+
+	//Scopes and variables
+	private void beginScope() {
+		current.scopeDepth++;
+	}
+
+	private void endScope() {
+		current.scopeDepth--;
+		List<Local> locals = current.locals;
+		while(!locals.isEmpty() && locals.get(locals.size() - 1).depth > current.scopeDepth) {
+			emit(locals.get(locals.size() - 1).isCaptured ? OpCode.CLOSE_UPVALUE : OpCode.POP);
+			locals.remove(locals.size() - 1);
+		}
+	}
+
+	//pops (without forgetting them) the locals deeper than depth , used when break and continue jump out of scopes .
+	private void discardLocals(int depth) {
+		List<Local> locals = current.locals;
+		for(int i = locals.size() - 1; i >= 0 && locals.get(i).depth > depth; i--) {
+			emit(locals.get(i).isCaptured ? OpCode.CLOSE_UPVALUE : OpCode.POP);
+		}
+	}
+
+	private void addLocal(Token name) {
+		if(current.locals.size() == MAX_LOCALS) {
+			Lox.error(name, "Too many local variables in function.");
+			return;
+		}
+		current.locals.add(new Local(name.lexeme,-1));
+	}
+
+	private void markInitialized() {
+		if(current.scopeDepth == 0) return;
+		current.locals.get(current.locals.size() - 1).depth = current.scopeDepth;
+	}
+
+	//declares a variable that is about to be pushed on the stack (locals) or returns the constant of its name (globals) .
+	private int declareVariable(Token name) {
+		line = name.line;
+		if(current.scopeDepth > 0) {
+			addLocal(name);
+			return -1;
+		}
+		return constant(name.lexeme);
+	}
+
+	private void defineVariable(int global) {
+		if(current.scopeDepth > 0) {
+			markInitialized();
+			return;
+		}
+		emitShort(OpCode.DEFINE_GLOBAL,global);
+	}
+
+	private static int resolveLocal(FunctionState state,String name) {
+		for(int i = state.locals.size() - 1; i >= 0; i--) {
+			if(state.locals.get(i).name.equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int resolveUpvalue(FunctionState state,String name) {
+		if(state.enclosing == null) return -1;
+		int local = resolveLocal(state.enclosing,name);
+		if(local != -1) {
+			state.enclosing.locals.get(local).isCaptured = true;
+			return addUpvalue(state,local,true);
+		}
+		int upvalue = resolveUpvalue(state.enclosing,name);
+		if(upvalue != -1) {
+			return addUpvalue(state,upvalue,false);
+		}
+		return -1;
+	}
+
+	private int addUpvalue(FunctionState state,int index,boolean isLocal) {
+		for(int i = 0; i < state.upvalues.size(); i++) {
+			Upvalue upvalue = state.upvalues.get(i);
+			if(upvalue.index == index && upvalue.isLocal == isLocal) {
+				return i;
+			}
+		}
+		if(state.upvalues.size() == MAX_UPVALUES) {
+			Lox.error(line, "Too many closure variables in function.");
+			return 0;
+		}
+		state.upvalues.add(new Upvalue(index,isLocal));
+		return state.upvalues.size() - 1;
+	}
+
+	private void namedVariable(String name,Expr value) {
+		int getOp, setOp;
+		int arg = resolveLocal(current,name);
+		if(arg != -1) {
+			getOp = OpCode.GET_LOCAL;
+			setOp = OpCode.SET_LOCAL;
+		} else if ((arg = resolveUpvalue(current,name)) != -1) {
+			getOp = OpCode.GET_UPVALUE;
+			setOp = OpCode.SET_UPVALUE;
+		} else {
+			arg = constant(name);
+			if(value != null) {
+				compile(value);
+				emitShort(OpCode.SET_GLOBAL,arg);
+			} else {
+				emitShort(OpCode.GET_GLOBAL,arg);
+			}
+			return;
+		}
+		if(value != null) {
+			compile(value);
+			emit(setOp,arg);
+		} else {
+			emit(getOp,arg);
+		}
+	}
+
+	//Functions
+	private void function(Token name,List<Token> parameters,List<Stmt> body,FunctionType type) {
+		current = new FunctionState(current,new VM.Function(name.lexeme,parameters.size()),type);
+		beginScope();
+		for(Token parm : parameters) {
+			addLocal(parm);
+			markInitialized();
+			adjustStack(1);
+		}
+		for(Stmt stmt : body) {
+			compile(stmt);
+		}
+		FunctionState state = endFunction();
+		line = name.line;
+		int index = constant(state.function);
+		emitShort(OpCode.CLOSURE,index);
+		for(Upvalue upvalue : state.upvalues) {
+			emitByte(upvalue.isLocal ? 1 : 0);
+			emitByte(upvalue.index);
+		}
+	}
+
+	//Statements
+	@Override
+	public Void visitExpressionStmt(Expression stmt) {
+		compile(stmt.expression);
+		emit(OpCode.POP);
+		return null;
+	}
+
+	@Override
+	public Void visitBlockStmt(Block stmt) {
+		beginScope();
+		BlockScope block = null;
+		if(current.loop != null) {
+			block = new BlockScope(current.block,current.scopeDepth);
+			current.block = block;
+		}
+		for(Stmt statement : stmt.statements) {
+			compile(statement);
+		}
+		endScope();
+		if(block != null) {
+			for(int jump : block.continues) {
+				patchJump(jump);
+			}
+			current.block = block.enclosing;
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitFunctionStmt(Function stmt) {
+		int global = declareVariable(stmt.name);
+		markInitialized();
+		function(stmt.name,stmt.parameters,stmt.body,FunctionType.FUNCTION);
+		defineVariable(global);
+		return null;
+	}
+
+	@Override
+	public Void visitClassStmt(Class stmt) {
+		line = stmt.name.line;
+		int name = constant(stmt.name.lexeme);
+		int global = declareVariable(stmt.name);
+		emitShort(OpCode.CLASS,name);
+		defineVariable(global);
+
+		if(stmt.superClass != null) {
+			namedVariable(stmt.superClass.name.lexeme,null);
+			beginScope();
+			addLocal(new Token(TokenType.SUPER,"super",null,stmt.name.line));
+			markInitialized();
+			namedVariable(stmt.name.lexeme,null);
+			emit(OpCode.INHERIT);
+		}
+
+		namedVariable(stmt.name.lexeme,null);
+		for(Stmt.Function method : stmt.methods) {
+			FunctionType type = method.name.lexeme.equals("init") ? FunctionType.INIT : FunctionType.METHOD;
+			function(method.name,method.parameters,method.body,type);
+			emitShort(OpCode.METHOD,constant(method.name.lexeme));
+		}
+		for(Stmt.Function method : stmt.staticMethods) {
+			function(method.name,method.parameters,method.body,FunctionType.FUNCTION);
+			emitShort(OpCode.STATIC_METHOD,constant(method.name.lexeme));
+		}
+		emit(OpCode.POP);
+
+		if(stmt.superClass != null) {
+			endScope();
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitIfStmt(If stmt) {
+		compile(stmt.condition);
+		int depth = current.stackDepth;
+		int thenJump = emitJump(OpCode.JUMP_IF_FALSE);
+		emit(OpCode.POP);
+		compile(stmt.thenStmt);
+		int elseJump = emitJump(OpCode.JUMP);
+		patchJump(thenJump);
+		current.stackDepth = depth;
+		emit(OpCode.POP);
+		if(stmt.elseStmt != null) compile(stmt.elseStmt);
+		patchJump(elseJump);
+		return null;
+	}
+
+	@Override
+	public Void visitPrintStmt(Print stmt) {
+		compile(stmt.expression);
+		emit(OpCode.PRINT);
+		return null;
+	}
+
+	@Override
+	public Void visitVarStmt(Var stmt) {
+		int global = declareVariable(stmt.name);
+		if(stmt.initializer != null) {
+			compile(stmt.initializer);
+		} else {
+			emit(OpCode.NIL);
+		}
+		defineVariable(global);
+		return null;
+	}
+
+	@Override
+	public Void visitWhileStmt(While stmt) {
+		Loop loop = new Loop(current.loop,chunk().count,current.scopeDepth);
+		BlockScope enclosingBlock = current.block;
+		current.loop = loop;
+		current.block = null;
+
+		compile(stmt.condition);
+		int depth = current.stackDepth;
+		int exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+		emit(OpCode.POP);
+		compile(stmt.Body);
+		emitLoop(loop.start);
+		patchJump(exitJump);
+		current.stackDepth = depth;
+		emit(OpCode.POP);
+		for(int jump : loop.breaks) {
+			patchJump(jump);
+		}
+
+		current.loop = loop.enclosing;
+		current.block = enclosingBlock;
+		return null;
+	}
+
+	@Override
+	public Void visitBreakStmt(Break stmt) {
+		line = stmt.name.line;
+		if(current.loop == null) {
+			Lox.error(stmt.name,"Break cannot be used outside a loop.");
+			return null;
+		}
+		int depth = current.stackDepth;
+		discardLocals(current.loop.scopeDepth);
+		current.loop.breaks.add(emitJump(OpCode.JUMP));
+		current.stackDepth = depth;
+		return null;
+	}
+
+	@Override
+	public Void visitContinueStmt(Continue stmt) {
+		line = stmt.name.line;
+		if(current.loop == null) {
+			Lox.error(stmt.name, "Contine cannot be used outside a loop.");
+			return null;
+		}
+		int depth = current.stackDepth;
+		if(current.block != null) {
+			discardLocals(current.block.scopeDepth - 1);
+			current.block.continues.add(emitJump(OpCode.JUMP));
+		} else {
+			discardLocals(current.loop.scopeDepth);
+			emitLoop(current.loop.start);
+		}
+		current.stackDepth = depth;
+		return null;
+	}
+
+	@Override
+	public Void visitReturnStmt(Return stmt) {
+		line = stmt.keyword.line;
+		if(stmt.value == null) {
+			emitReturn();
+		} else {
+			compile(stmt.value);
+			emit(OpCode.RETURN);
+		}
+		return null;
+	}
+
+	//Expressions
+	@Override
+	public Void visitBinaryExpr(Binary expr) {
+		compile(expr.left);
+		if(expr.operator.type == TokenType.COMMA) {
+			emit(OpCode.POP);
+			compile(expr.right);
+			return null;
+		}
+		compile(expr.right);
+		line = expr.operator.line;
+		switch(expr.operator.type) {
+		case PLUS: emit(OpCode.ADD); break;
+		case MINUS: emit(OpCode.SUBTRACT); break;
+		case STAR: emit(OpCode.MULTIPLY); break;
+		case SLASH: emit(OpCode.DIVIDE); break;
+		case GREATER: emit(OpCode.GREATER); break;
+		case GREATER_EQUAL: emit(OpCode.GREATER_EQUAL); break;
+		case LESS: emit(OpCode.LESS); break;
+		case LESS_EQUAL: emit(OpCode.LESS_EQUAL); break;
+		case EQUAL_EQUAL: emit(OpCode.EQUAL); break;
+		case BANG_EQUAL: emit(OpCode.NOT_EQUAL); break;
+		case BITWISE_AND: emit(OpCode.BITWISE_AND); break;
+		case BITWISE_OR: emit(OpCode.BITWISE_OR); break;
+		case XOR: emit(OpCode.XOR); break;
+		default:
+			Lox.error(expr.operator, "Undefined operator for binary expression.");
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitAssignExpr(Assign expr) {
+		line = expr.name.line;
+		namedVariable(expr.name.lexeme,expr.value);
+		return null;
+	}
+
+	@Override
+	public Void visitGroupingExpr(Grouping expr) {
+		compile(expr.expression);
+		return null;
+	}
+
+	@Override
+	public Void visitLiteralExpr(Literal expr) {
+		if(expr.value == null) {
+			emit(OpCode.NIL);
+		} else if(expr.value instanceof Boolean) {
+			emit((Boolean) expr.value ? OpCode.TRUE : OpCode.FALSE);
+		} else {
+			emitShort(OpCode.CONSTANT,constant(expr.value));
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitUnaryExpr(Unary expr) {
+		compile(expr.right);
+		line = expr.operator.line;
+		switch(expr.operator.type) {
+		case BANG: emit(OpCode.NOT); break;
+		case MINUS: emit(OpCode.NEGATE); break;
+		default:
+			Lox.error(expr.operator, "Undefined operator for unary expression.");
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitTernaryExpr(Ternary expr) {
+		compile(expr.condition);
+		int depth = current.stackDepth;
+		int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+		emit(OpCode.POP);
+		compile(expr.first);
+		int endJump = emitJump(OpCode.JUMP);
+		patchJump(elseJump);
+		current.stackDepth = depth;
+		emit(OpCode.POP);
+		compile(expr.second);
+		patchJump(endJump);
+		return null;
+	}
+
+	@Override
+	public Void visitVariableExpr(Variable expr) {
+		line = expr.name.line;
+		namedVariable(expr.name.lexeme,null);
+		return null;
+	}
+
+	@Override
+	public Void visitLogicalExpr(Logical expr) {
+		compile(expr.left);
+		if(expr.operator.type == TokenType.OR) {
+			int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+			int endJump = emitJump(OpCode.JUMP);
+			patchJump(elseJump);
+			emit(OpCode.POP);
+			compile(expr.right);
+			patchJump(endJump);
+		} else {
+			int endJump = emitJump(OpCode.JUMP_IF_FALSE);
+			emit(OpCode.POP);
+			compile(expr.right);
+			patchJump(endJump);
+		}
+		return null;
+	}
+
+	//a call of a property or a super method is compiled to a single invoke instruction so no bound method is created .
+	@Override
+	public Void visitCallExpr(Call expr) {
+		if(expr.calle instanceof Expr.Get) {
+			Expr.Get get = (Expr.Get) expr.calle;
+			compile(get.object);
+			arguments(expr.args);
+			line = expr.paren.line;
+			emitShort(OpCode.INVOKE,constant(get.name.lexeme));
+			emitByte(expr.args.size());
+			adjustStack(-expr.args.size());
+		} else if(expr.calle instanceof Expr.Super) {
+			Expr.Super sup = (Expr.Super) expr.calle;
+			line = sup.keyword.line;
+			namedVariable("this",null);
+			arguments(expr.args);
+			namedVariable("super",null);
+			line = expr.paren.line;
+			emitShort(OpCode.SUPER_INVOKE,constant(sup.method.lexeme));
+			emitByte(expr.args.size());
+			adjustStack(-expr.args.size() - 1);
+		} else {
+			compile(expr.calle);
+			arguments(expr.args);
+			line = expr.paren.line;
+			emit(OpCode.CALL,expr.args.size());
+			adjustStack(-expr.args.size());
+		}
+		return null;
+	}
+
+	private void arguments(List<Expr> args) {
+		for(Expr arg : args) {
+			compile(arg);
+		}
+	}
+
+	@Override
+	public Void visitFunExprExpr(FunExpr expr) {
+		line = expr.paren.line;
+		function(new Token(TokenType.IDENTIFIER,"",null,expr.paren.line),expr.parameters,expr.body,FunctionType.FUNCTION);
+		return null;
+	}
+
+	@Override
+	public Void visitGetExpr(Get expr) {
+		compile(expr.object);
+		line = expr.name.line;
+		emitShort(OpCode.GET_PROPERTY,constant(expr.name.lexeme));
+		return null;
+	}
+
+	@Override
+	public Void visitSetExpr(Set expr) {
+		compile(expr.object);
+		compile(expr.value);
+		line = expr.name.line;
+		emitShort(OpCode.SET_PROPERTY,constant(expr.name.lexeme));
+		return null;
+	}
+
+	@Override
+	public Void visitThisExpr(This expr) {
+		line = expr.keyword.line;
+		namedVariable("this",null);
+		return null;
+	}
+
+	@Override
+	public Void visitSuperExpr(Super expr) {
+		line = expr.keyword.line;
+		namedVariable("this",null);
+		namedVariable("super",null);
+		emitShort(OpCode.GET_SUPER,constant(expr.method.lexeme));
+		return null;
+	}
+}
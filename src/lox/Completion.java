@@ -0,0 +1,13 @@
+package lox;
+
+/* how the execution of a statement ended , the interpreter returns it from every statement instead of throwing or setting flags .
+ * a RETURN leaves its value in the interpreter (check Interpreter.returnValue) so completing a statement never allocates .
+ * a TAIL_CALL is a return of a call that the function makes after it returns (check LoxFunction.call) .
+ */
+enum Completion {
+	NORMAL,
+	RETURN,
+	TAIL_CALL,
+	BREAK,
+	CONTINUE
+}
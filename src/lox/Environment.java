@@ -1,59 +1,110 @@
 package lox;
 
+import java.util.Arrays;
 import java.util.HashMap; 
 import java.util.Map ; 
 
 /* this is our memory representation . 
- * variables , functions and classes that are declared in the same scope are stored in a environment (enclosing is the environment of the enclosing scope).   
+ * the global environment keeps its variables in an array indexed by their name's index (check index) , a global is late bound : 
+ * it is looked up when it is used and it is an error if it is not defined by then . a local environment is the frame of a call (or of a top level block) , 
+ * it keeps the locals of the function and of every block in it in an array indexed by the slot the resolver gave them when they were declared 
+ * so reading a local never hashes its name . the locals of enclosing functions are not reached through the environment , 
+ * the closure copied the ones it uses (check Resolver.upvalue) and they are in upvalues . 
  */
 public class Environment {
-	private final Map<String,Object> values = new HashMap<>(); 
-	final Environment enclosing; 
+	static final Object[] NO_UPVALUES = new Object[0]; 
+	//every global name has the same index in every interpreter , so a node that uses a global can keep the index (check Expr.Variable.global) . 
+	private static final Map<String,Integer> indexes = new HashMap<>(); 
+	//the value of a global that is not defined (nil is null) . 
+	private static final Object UNDEFINED = new Object(); 
+	private Object[] values; 
+	private Object[] slots; 
+	private int count = 0; 
+	final Object[] upvalues; 
 	
 	Environment(){
-		enclosing = null; 
+		upvalues = NO_UPVALUES; 
+		values = new Object[16]; 
+		Arrays.fill(values, UNDEFINED);
 	}
 	
-	Environment(Environment env){
-		enclosing = env; 
+	Environment(Object[] upvalues){
+		this.upvalues = upvalues; 
+		values = null; 
+		slots = new Object[4]; 
 	}
+	
+	static synchronized int index(String name) {
+		Integer index = indexes.get(name); 
+		if(index == null) {
+			index = indexes.size(); 
+			indexes.put(name, index); 
+		}
+		return index; 
+	}
+	
+	//globals are defined by name . 
 	void define(String name,Object value) {
-		values.put(name,value); 
+		int index = index(name); 
+		if(index >= values.length) {
+			int length = values.length; 
+			values = Arrays.copyOf(values, Math.max(length * 2, index + 1)); 
+			Arrays.fill(values, length, values.length, UNDEFINED);
+		}
+		values[index] = value; 
+	}
+	
+	//locals are defined in the same order the resolver declared them , so the next free slot is the slot the resolver gave them . 
+	void define(Object value) {
+		if(count == slots.length) {
+			Object[] grown = new Object[count * 2]; 
+			System.arraycopy(slots, 0, grown, 0, count);
+			slots = grown; 
+		}
+		slots[count++] = value; 
 	}
 	
-	Environment ancestor(int dist) {
-		Environment env = this; 
-		for(int i = 0; i< dist ; i++) {
-			env = env.enclosing; 
+	//how many locals are defined , the locals of an elided block come after the ones of the environment . 
+	int size() {
+		return count; 
+	}
+	
+	//drops the locals defined after the first size ones (the locals of an elided block that ended) . 
+	void truncate(int size) {
+		for(int i = size; i < count; i++) {
+			slots[i] = null; 
 		}
-		return env; 
+		count = size; 
 	}
 	
 	Object get(Token name) {
-		if(values.containsKey(name.lexeme)) {
-			return values.get(name.lexeme); 
+		return get(index(name.lexeme), name); 
+	}
+	
+	Object get(int index,Token name) {
+		if(index < values.length && values[index] != UNDEFINED) {
+			return values[index]; 
 		}
-		if (enclosing != null ) return enclosing.get(name); 
 		throw new RuntimeError(name, "Undefined varaible '" + name.lexeme + "'." ); 
 	}
 	
-	Object getAt(int distance,String name) {
-		return ancestor(distance).values.get(name); 
+	Object getAt(int slot) {
+		return slots[slot]; 
 	}
 	
 	void assign(Token name,Object value) {
-		if(values.containsKey(name.lexeme)) {
-			values.put(name.lexeme,value); 
-			return; 
-		}
-		if(enclosing != null) {
-			enclosing.assign(name, value);
+		assign(index(name.lexeme), name, value); 
+	}
+	
+	void assign(int index,Token name,Object value) {
+		if(index < values.length && values[index] != UNDEFINED) {
+			values[index] = value; 
 			return; 
 		}
 		throw new RuntimeError(name, "Undefined varaible '" + name.lexeme + "'." ); 
 	}
 	
-	void assignAt(Token name,Object value, int dist) {
-		ancestor(dist).values.put(name.lexeme,value); 
+	void assignAt(int slot,Object value) {
+		slots[slot] = value; 
 	}
 }
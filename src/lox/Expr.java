@@ -34,6 +34,7 @@ abstract class Expr {
      final Expr left;
      final Token operator;
      final Expr right;
+     BinaryNode node = BinaryNode.UNINITIALIZED;
    }
 
  static class Assign extends Expr {
@@ -48,6 +49,8 @@ abstract class Expr {
 
      final Token name;
      final Expr value;
+     Location local;
+     int global = -1;
    }
 
  static class Grouping extends Expr {
@@ -114,6 +117,8 @@ abstract class Expr {
      }
 
      final Token name;
+     Location local;
+     int global = -1;
    }
 
  static class Logical extends Expr {
@@ -162,6 +167,8 @@ abstract class Expr {
      final Token paren;
      final List<Token> parameters;
      final List<Stmt> body;
+     int[] captures;
+     int[] boxedParameters;
    }
 
  static class Get extends Expr {
@@ -176,6 +183,12 @@ abstract class Expr {
 
      final Expr object ;
      final Token name;
+     InlineCache cache = new InlineCache();
+     Shape shape;
+     int slot;
+     LoxClass owner;
+     Object member;
+     int version;
    }
 
  static class Set extends Expr {
@@ -192,6 +205,9 @@ abstract class Expr {
      final Expr object ;
      final Token name ;
      final Expr value;
+     Shape shape;
+     Shape next;
+     int slot;
    }
 
  static class This extends Expr {
@@ -204,6 +220,7 @@ abstract class Expr {
      }
 
      final Token keyword;
+     Location local;
    }
 
  static class Super extends Expr {
@@ -218,6 +235,10 @@ abstract class Expr {
 
      final Token keyword ;
      final Token method;
+     Location local;
+     Location receiver;
+     LoxClass superclass;
+     LoxFunction target;
    }
 
 abstract <R> R accept(Visitor<R> visitor);
@@ -0,0 +1,27 @@
+package lox;
+
+/* the methods that a property access (check Expr.Get) found , keyed on the class of the receiver .
+ * most sites only ever see one class so the first entry answers with one comparison , a site that sees more
+ * remembers up to MAX_ENTRIES classes and after that (a megamorphic site) it looks the method up in the class every time .
+ * methods can not be added to a class after it is declared so an entry never goes stale .
+ */
+final class InlineCache {
+	private static final int MAX_ENTRIES = 4;
+	private final LoxClass[] classes = new LoxClass[MAX_ENTRIES];
+	private final LoxFunction[] methods = new LoxFunction[MAX_ENTRIES];
+	private int count = 0;
+
+	//the unbound method named name of klass or null if it has none .
+	LoxFunction lookup(LoxClass klass,String name) {
+		for(int i = 0; i < count; i++) {
+			if(classes[i] == klass) return methods[i];
+		}
+		LoxFunction method = klass.findMethod(name);
+		if(count < MAX_ENTRIES) {
+			classes[count] = klass;
+			methods[count] = method;
+			count++;
+		}
+		return method;
+	}
+}
@@ -27,19 +27,20 @@ import lox.Stmt.While;
 import lox.TokenType;
 
 import java.util.List;
-import java.util.ArrayList;
 import java.util.HashMap; 
 import java.util.Map; 
 
 
 
-public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void>{
+public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Completion>{
 	
     Environment global = new Environment(); 
     Environment env = global ; 
-    private final Map<Expr,Integer> locals = new HashMap<>(); 
-    private boolean isBreak = false; 
-    private boolean isCont = false; 
+    Object returnValue = null; 
+    //the call a TAIL_CALL completion leaves to the function that returns it (check LoxFunction.call) . 
+    LoxFunction tailFunction = null; 
+    LoxInstance tailReceiver = null; 
+    Object[] tailArguments = null; 
     private Object result = null; 
     private boolean isExpr = true; 
     
@@ -47,7 +48,7 @@ public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void>{
     	global.define("clock", new LoxCallable() {
 
 			@Override
-			public Object call(Interpreter interpreter, List<Object> arguments) {
+			public Object call(Interpreter interpreter, Object[] arguments) {
 				return (double) System.currentTimeMillis()/1000.0 ;
 			}
 
@@ -75,10 +76,6 @@ public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void>{
 		return this.result; 
 	}
 	
-	public void resolve(Expr expr, int value) {
-		locals.put(expr, value); 
-	}
-	
 	private String Stringfy(Object value) {
 		if(value == null) return "nil"; 
 		if (value instanceof Double) {
@@ -91,32 +88,35 @@ public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void>{
 		return value.toString(); 
 	}
 	
-	public Object lookupVariable(Token name,Expr expr) {
-		Integer distance = locals.get(expr); 
-		if(distance != null) {
-			return env.getAt(distance,name.lexeme); 
+	//the resolver stored the location of a local in the node that uses it (check Location) , a name without one is a global . 
+	public Object lookupVariable(Token name,Location local) {
+		if(local != null) {
+			return local.get(env); 
 		} else {
 			return global.get(name); 
 		}
 	}
 
 	
+	//the node of the expression evaluates it , it specializes itself on the types of the operands it sees (check BinaryNode) . 
 	@Override
 	public Object visitBinaryExpr(Binary expr) {
-		Object left = expr.left.accept(this); 
-		Object right = expr.right.accept(this); 
-		
-		switch(expr.operator.type) {
+		return expr.node.execute(this, expr); 
+	}
+	
+	//the semantic of every binary operator on every type , the generic node of binary expressions uses it . 
+	Object binary(Token operator,Object left,Object right) {
+		switch(operator.type) {
 		case MINUS: 
-			checkNumberOperand(expr.operator,right,left);
+			checkNumberOperand(operator,right,left);
 			return (double)left - (double) right; 
 		case SLASH:
-			checkNumberOperand(expr.operator,right,left);
+			checkNumberOperand(operator,right,left);
 			if ((double) right == 0 )
-				throw new RuntimeError(expr.operator,"Division by zero is not allowed."); 
+				throw new RuntimeError(operator,"Division by zero is not allowed."); 
 			return (double)left / (double) right; 
 		case STAR:
-			checkNumberOperand(expr.operator,right,left);
+			checkNumberOperand(operator,right,left);
 			return (double)left * (double) right ; 
 		case PLUS: 
 			if(left instanceof Double && right instanceof Double)
@@ -131,16 +131,16 @@ public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void>{
 			}
 			return null; 
 		case GREATER: 
-			checkNumberOperand(expr.operator,right,left);
+			checkNumberOperand(operator,right,left);
 			return (double) left > (double) right; 
 		case GREATER_EQUAL: 
-			checkNumberOperand(expr.operator,right,left);
+			checkNumberOperand(operator,right,left);
 			return (double) left >= (double) right; 
 		case LESS: 
-			checkNumberOperand(expr.operator,right,left);
+			checkNumberOperand(operator,right,left);
 			return (double) left < (double) right; 
 		case LESS_EQUAL : 
-			checkNumberOperand(expr.operator,right,left);
+			checkNumberOperand(operator,right,left);
 			return (double) left <= (double) right; 
 		case EQUAL_EQUAL : 
 			return isEqual(left,right); 
@@ -149,8 +149,8 @@ public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void>{
 		case COMMA : 
 			return right;
 		default : 
-			checkNumberOperand(expr.operator,right,left);
-			return  bitwise(expr.operator,left,right) ;
+			checkNumberOperand(operator,right,left);
+			return  bitwise(operator,left,right) ;
 		}
 	}
 
@@ -179,6 +179,30 @@ public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void>{
 		return null ; 
 	}
 
+	/* evaluates an expression that is expected to be a number without boxing it , numeric binary nodes (check BinaryNode)
+	 * and the negation , grouping and literals of numbers are computed as primitives . 
+	 * throws UnexpectedResult with the value when the expression is not a number . 
+	 */
+	double evaluateNumber(Expr expr) {
+		if(expr instanceof Binary) {
+			Binary binary = (Binary) expr; 
+			if(binary.node.isArithmetic()) return binary.node.executeNumber(this, binary); 
+		} else if(expr instanceof Grouping) {
+			return evaluateNumber(((Grouping) expr).expression); 
+		} else if(expr instanceof Unary && ((Unary) expr).operator.type == TokenType.MINUS) {
+			Unary unary = (Unary) expr; 
+			try {
+				return -evaluateNumber(unary.right); 
+			} catch(UnexpectedResult e) {
+				checkNumberOperand(unary.operator,e.value); 
+				throw e; 
+			}
+		}
+		Object value = expr.accept(this); 
+		if(value instanceof Double) return (double) value; 
+		throw new UnexpectedResult(value); 
+	}
+
 	@Override
 	public Object visitTernaryExpr(Ternary expr) {	
 		Boolean condition = isTruthy(expr.condition.accept(this)); 
@@ -235,82 +259,108 @@ public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void>{
 	}
 
 	@Override
-	public Void visitExpressionStmt(Expression stmt) {
+	public Completion visitExpressionStmt(Expression stmt) {
+		Object value = stmt.expression.accept(this); 
 		if(isExpr)
-			this.result = stmt.expression.accept(this); 
-		return null; 
+			this.result = value; 
+		return Completion.NORMAL;
 	}
 
 	@Override
-	public Void visitPrintStmt(Print stmt) {
+	public Completion visitPrintStmt(Print stmt) {
 		
 		System.out.println(Stringfy(stmt.expression.accept(this)));
-		return null;
+		return Completion.NORMAL;
 	}
 
 	@Override
-	public Void visitVarStmt(Var stmt) {
+	public Completion visitVarStmt(Var stmt) {
+		//a closure in the initializer may capture the variable , so its box is defined first . 
+		if(stmt.boxed) {
+			Cell cell = new Cell(null); 
+			env.define(cell); 
+			if(stmt.initializer != null) cell.value = stmt.initializer.accept(this); 
+			return Completion.NORMAL; 
+		}
 		Object value = null; 
 		if(stmt.initializer != null) {
 			value = stmt.initializer.accept(this); 
 		}
-		env.define(stmt.name.lexeme, value);
-		return null;
+		define(stmt.name, value);
+		return Completion.NORMAL;
 	}
 
 	@Override
 	public Object visitVariableExpr(Variable expr) {
-		return lookupVariable(expr.name,expr); 
+		if(expr.local != null) return expr.local.get(env); 
+		//the index of a global name never changes so the node keeps it , the global is still looked up every time . 
+		if(expr.global < 0) expr.global = Environment.index(expr.name.lexeme); 
+		return global.get(expr.global, expr.name); 
 	}
 
 	@Override
 	public Object visitAssignExpr(Assign expr) {
 		Object value = expr.value.accept(this); 
 		
-		Integer dist = locals.get(expr); 
-		if(dist != null) {
-			env.assignAt(expr.name,value,dist); 
+		if(expr.local != null) {
+			expr.local.set(env,value); 
 		} else {
-			global.assign(expr.name, value);
+			if(expr.global < 0) expr.global = Environment.index(expr.name.lexeme); 
+			global.assign(expr.global, expr.name, value);
 		}
 		return value; 
 	}
 
+	//top level declarations are globals and are defined by name , every other declaration takes the next slot of the current environment . 
+	private void define(Token name,Object value) {
+		if(env == global) {
+			global.define(name.lexeme, value);
+		} else {
+			env.define(value);
+		}
+	}
+
 	@Override
-	public Void visitBlockStmt(Block stmt) {
-		executeBlock(stmt.statements, new Environment(env)); 
-		return null;
+	public Completion visitBlockStmt(Block stmt) {
+		//an elided block (check Resolver.Scope) runs in the current environment , its locals are dropped when it ends . 
+		if(stmt.elided) {
+			int size = env.size(); 
+			Completion completion = executeBlock(stmt.statements, env); 
+			env.truncate(size);
+			return completion; 
+		}
+		return executeBlock(stmt.statements, new Environment(Environment.NO_UPVALUES)); 
 	}
 	
-	Object executeBlock(List<Stmt> statements, Environment envi) {
+	//a continue ends the innermost block , a break or a return ends every block until the loop or the function . 
+	Completion executeBlock(List<Stmt> statements, Environment envi) {
 		Environment previous = this.env; 
 		try {
 			this.env = envi; 
 			for(Stmt stmt: statements) {
-				stmt.accept(this); 
-				if (isCont) {
-					isCont = false; 
-					break; 
+				Completion completion = stmt.accept(this); 
+				if (completion == Completion.CONTINUE) {
+					return Completion.NORMAL; 
 				}
-				if(isBreak) {
-					break; 
+				if(completion != Completion.NORMAL) {
+					return completion; 
 				}
 			}
 		}finally {
 			this.env = previous; 
 		}
-		return null; 
+		return Completion.NORMAL; 
 	}
 
 	@Override
-	public Void visitIfStmt(If stmt) {
+	public Completion visitIfStmt(If stmt) {
 		boolean condition = isTruthy(stmt.condition.accept(this)); 
 		if(condition) { 
 			return stmt.thenStmt.accept(this); 
 		}
 		else if (stmt.elseStmt != null )
 			return stmt.elseStmt.accept(this);  
-		return null; 
+		return Completion.NORMAL; 
 	}
 
 	@Override
@@ -325,70 +375,158 @@ public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void>{
 	}
 
 	@Override
-	public Void visitWhileStmt(While stmt) {
-		while(isTruthy(stmt.condition.accept(this)) && !isBreak) {
-				stmt.Body.accept(this); 
+	public Completion visitWhileStmt(While stmt) {
+		while(isTruthy(stmt.condition.accept(this))) {
+			Completion completion = stmt.Body.accept(this); 
+			if(completion == Completion.BREAK) break; 
+			if(completion == Completion.RETURN || completion == Completion.TAIL_CALL) return completion; 
 		}
-		isBreak = false; 
-		return null;
+		return Completion.NORMAL;
 	}
 
 	@Override
-	public Void visitBreakStmt(Break stmt) {
-		isBreak = true; 
-		return null;
+	public Completion visitBreakStmt(Break stmt) {
+		return Completion.BREAK;
 	}
 
 	@Override
-	public Void visitContinueStmt(Continue stmt) {
-		isCont = true; 
-		return null;
+	public Completion visitContinueStmt(Continue stmt) {
+		return Completion.CONTINUE;
 	}
 
 	@Override
 	public Object visitCallExpr(Call expr) {
-		Object function = expr.calle.accept(this);
+		if(expr.calle instanceof Get) {
+			return invoke(expr,(Get) expr.calle); 
+		}
+		if(expr.calle instanceof Super) {
+			return invoke(expr,(Super) expr.calle); 
+		}
+		return call(expr,expr.calle.accept(this)); 
+	}
+	
+	//a call of a method of the superclass (super.method(x)) , it is called with 'this' without binding it . 
+	private Object invoke(Call expr,Super callee) {
+		LoxFunction method = superMethod(callee); 
+		return method.call(this, (LoxInstance) callee.receiver.get(env), arguments(expr,method)); 
+	}
+	
+	//a call of a property (obj.method(x)) , a method is called with the instance as 'this' without binding it first . 
+	private Object invoke(Call expr,Get get) {
+		Object object = get.object.accept(this); 
+		if(object instanceof LoxInstance && !(object instanceof LoxClass) && ((LoxInstance) object).slot(get) < 0) {
+			LoxInstance instance = (LoxInstance) object; 
+			LoxFunction method = instance.method(get); 
+			return method.call(this, instance, arguments(expr,method)); 
+		}
+		return call(expr,property(get,object)); 
+	}
 	
+	private Object call(Call expr,Object function) {
 		if(!(function instanceof LoxCallable)) {
 			throw new RuntimeError(expr.paren,"only functions and classed are callable."); 
 		}
 		
-		List<Object> arguments = new ArrayList<>(); 
-		for(Expr arg : expr.args) {
-			arguments.add(arg.accept(this)); 
+		LoxCallable fun = (LoxCallable) function; 
+		return fun.call(this,arguments(expr,fun));
+	}
+	
+	//evaluates the arguments of the call in an array of their exact size (check LoxCallable) , the callee must take that many arguments . 
+	private Object[] arguments(Call expr,LoxCallable fun) {
+		List<Expr> args = expr.args; 
+		int count = args.size(); 
+		Object[] arguments = count == 0 ? LoxCallable.NO_ARGUMENTS : new Object[count]; 
+		for(int i = 0; i < count; i++) {
+			arguments[i] = args.get(i).accept(this); 
 		}
 		
-		
-		LoxCallable fun = (LoxCallable) function; 
-
-		if(fun.arity() != arguments.size()) {
-			throw new RuntimeError(expr.paren, "Expect " + fun.arity() + " arguments but got " + arguments.size() + " arguments."); 
+		if(fun.arity() != count) {
+			throw new RuntimeError(expr.paren, "Expect " + fun.arity() + " arguments but got " + count + " arguments."); 
 		} 
-		
-		return fun.call(this,arguments);
+		return arguments; 
 	}
 	
 	@Override
-	public Void visitFunctionStmt(Function stmt) {
-		LoxFunction function = new LoxFunction(stmt,env,false); 
-		env.define(stmt.name.lexeme,function);
-		return null;
+	public Completion visitFunctionStmt(Function stmt) {
+		//a function that captures itself (it is recursive) captures its box before it is created . 
+		if(stmt.boxed) {
+			Cell cell = new Cell(null); 
+			env.define(cell); 
+			cell.value = new LoxFunction(stmt,capture(stmt.captures),false); 
+			return Completion.NORMAL; 
+		}
+		LoxFunction function = new LoxFunction(stmt,capture(stmt.captures),false); 
+		define(stmt.name,function);
+		return Completion.NORMAL;
+	}
+	
+	//the variables a new closure copies from the current environment : a slot , or -1 - i for a variable the current function captured . 
+	private Object[] capture(int[] captures) {
+		if(captures.length == 0) return Environment.NO_UPVALUES; 
+		Object[] upvalues = new Object[captures.length]; 
+		for(int i = 0; i < captures.length; i++) {
+			int location = captures[i]; 
+			upvalues[i] = location >= 0 ? env.getAt(location) : env.upvalues[-1 - location]; 
+		}
+		return upvalues; 
 	}
 	
 	@Override
-	public Void visitReturnStmt(Stmt.Return stmt) {
+	public Completion visitReturnStmt(Stmt.Return stmt) {
+		if(stmt.tailCall) return tailCall((Call) stmt.value); 
 		Object value = null; 
 		if(stmt.value != null) value = stmt.value.accept(this); 
-		throw new ReturnValue(value); 
+		returnValue = value; 
+		return Completion.RETURN; 
+	}
+	
+	/* a call in tail position , when it calls a lox function (not an initializer) it is not made here : the callee and the arguments are 
+	 * left to the function that is returning , which runs the callee in its own loop so a chain of tail calls does not grow the stack . 
+	 */
+	private Completion tailCall(Call expr) {
+		Object callee; 
+		LoxInstance receiver = null; 
+		if(expr.calle instanceof Get) {
+			Get get = (Get) expr.calle; 
+			Object object = get.object.accept(this); 
+			if(object instanceof LoxInstance && !(object instanceof LoxClass) && ((LoxInstance) object).slot(get) < 0) {
+				receiver = (LoxInstance) object; 
+				callee = receiver.method(get); 
+			} else {
+				callee = property(get,object); 
+			}
+		} else if(expr.calle instanceof Super) {
+			receiver = (LoxInstance) ((Super) expr.calle).receiver.get(env); 
+			callee = superMethod((Super) expr.calle); 
+		} else {
+			callee = expr.calle.accept(this); 
+		}
+		if(callee instanceof LoxFunction && !((LoxFunction) callee).isInit()) {
+			LoxFunction function = (LoxFunction) callee; 
+			tailArguments = arguments(expr,function); 
+			tailFunction = function; 
+			tailReceiver = receiver; 
+			return Completion.TAIL_CALL; 
+		}
+		if(receiver != null) {
+			LoxFunction method = (LoxFunction) callee; 
+			returnValue = method.call(this, receiver, arguments(expr,method)); 
+		} else {
+			returnValue = call(expr,callee); 
+		}
+		return Completion.RETURN; 
 	}
 	
 	@Override
 	public Object visitFunExprExpr(FunExpr expr) {
-		return new LoxFunction(new Stmt.Function(new Token(TokenType.IDENTIFIER,"",null,expr.paren.line),expr.parameters, expr.body) , env,false);
+		Stmt.Function function = new Stmt.Function(new Token(TokenType.IDENTIFIER,"",null,expr.paren.line),expr.parameters, expr.body); 
+		function.captures = expr.captures; 
+		function.boxedParameters = expr.boxedParameters; 
+		return new LoxFunction(function, capture(expr.captures),false);
 	}
 	
 	@Override
-	public Void visitClassStmt(Class stmt) {
+	public Completion visitClassStmt(Class stmt) {
 		Object superClass = null; 
 		if(stmt.superClass != null) {
 			superClass = stmt.superClass.accept(this); 
@@ -396,34 +534,48 @@ public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void>{
 				throw new RuntimeError(stmt.superClass.name, "Super Class must be a class. "); 
 			}
 		}
-		env.define(stmt.name.lexeme, null);
+		//a local class takes its slot before 'super' takes the next one , the methods capture its box when it is boxed . 
+		boolean local = env != global; 
+		int slot = env.size(); 
+		if(local) env.define(stmt.boxed ? new Cell(null) : null); 
+		//'super' is a local of the class , in the current environment or in a new one for a top level class . 
+		Environment enclosing = env; 
+		int size = env.size(); 
 		if(stmt.superClass != null) {
-			env = new Environment(env); 
-			env.define("super", superClass);
+			if(!local) env = new Environment(Environment.NO_UPVALUES); 
+			env.define(superClass);
 		}
 		Map<String,LoxFunction> methods = new HashMap<>(); 
 		Map<String,LoxFunction> statMethods = new HashMap<>(); 
 		for(Stmt.Function method : stmt.methods) {
-			LoxFunction fun = new LoxFunction(method,env,method.name.lexeme.equals("init")); 
+			LoxFunction fun = new LoxFunction(method,capture(method.captures),method.name.lexeme.equals("init")); 
 			methods.put(method.name.lexeme,fun); 
 		}
 		for(Stmt.Function method : stmt.staticMethods) {
-			LoxFunction fun = new LoxFunction(method,env,method.name.lexeme.equals("init")); 
+			LoxFunction fun = new LoxFunction(method,capture(method.captures),method.name.lexeme.equals("init")); 
 			statMethods.put(method.name.lexeme,fun); 
 		}
 		LoxClass klass = new LoxClass(stmt.name.lexeme,(LoxClass) superClass, methods,statMethods); 
-		if(stmt.superClass != null) {
-			env = env.enclosing;
+		env = enclosing; 
+		env.truncate(size); 
+		if(!local) {
+			define(stmt.name,klass);
+		} else if(stmt.boxed) {
+			((Cell) env.getAt(slot)).value = klass; 
+		} else {
+			env.assignAt(slot, klass); 
 		}
-		env.assign(stmt.name,klass);
-		return null;
+		return Completion.NORMAL;
 	}
 	
 	@Override
 	public Object visitGetExpr(Get expr) { 
-		Object object = expr.object.accept(this); 
+		return property(expr,expr.object.accept(this)); 
+	}
+	
+	private Object property(Get expr,Object object) {
 		if(object instanceof LoxInstance ) {
-			return ((LoxInstance) object).get(expr.name); 
+			return ((LoxInstance) object).get(expr); 
 		}
 		throw new RuntimeError(expr.name, "Only Instances has fields ."); 
 	}
@@ -433,7 +585,7 @@ public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void>{
 		Object object = expr.object.accept(this); 
 		Object value = expr.value.accept(this); 
 		if(object instanceof LoxInstance) {
-			((LoxInstance) object).set(expr.name,value); 
+			((LoxInstance) object).set(expr,value); 
 		} else {
 			throw new RuntimeError(expr.name,"Only instances have fields."); 
 		}
@@ -442,18 +594,28 @@ public class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void>{
 	
 	@Override
 	public Object visitThisExpr(This expr) {
-		return lookupVariable(expr.keyword,expr);
+		return lookupVariable(expr.keyword,expr.local);
 	}
 	
 	@Override
 	public Object visitSuperExpr(Super expr) {
-		int dist = locals.get(expr); 
-		LoxClass superclass = (LoxClass) env.getAt(dist,"super"); 
-		LoxInstance thisclass = (LoxInstance) env.getAt(dist - 1, "this"); 
-		LoxFunction method = superclass.findMethod(thisclass,expr.method.lexeme); 
-		if(method == null ) {
-			throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme +"'.") ;
-		}
-		return method; 
+		return superMethod(expr).bind((LoxInstance) expr.receiver.get(env)); 
+	}
+	
+	/* the method that super.method names , it is looked up once per superclass : the superclass of a class body is fixed 
+	 * (it changes only when the class declaration runs again) so the expression keeps the method it found (check Expr.Super.target) . 
+	 * a call of super.method calls it with 'this' without binding it (check visitCallExpr) . 
+	 */
+	private LoxFunction superMethod(Super expr) {
+		LoxClass superclass = (LoxClass) expr.local.get(env); 
+		if(expr.superclass != superclass) {
+			LoxFunction method = superclass.findMethod(expr.method.lexeme); 
+			if(method == null ) {
+				throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme +"'.") ;
+			}
+			expr.target = method; 
+			expr.superclass = superclass; 
+		}
+		return expr.target; 
 	}
 }
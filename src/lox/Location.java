@@ -0,0 +1,32 @@
+package lox;
+
+/* where the resolver found a local (check Resolver.Reference) : a slot of the current environment or a variable the current function captured ,
+ * and whether it is boxed in a Cell (check Resolver.Declaration) . the resolver stores it in the node that uses the local ,
+ * a node without one uses a global .
+ */
+final class Location {
+	final int slot; 
+	final boolean upvalue; 
+	final boolean boxed; 
+	
+	//location is a slot of the current environment , or -1 - i for the i'th variable the current function captured . 
+	Location(int location,boolean boxed){
+		this.upvalue = location < 0; 
+		this.slot = upvalue ? -1 - location : location; 
+		this.boxed = boxed; 
+	}
+	
+	Object get(Environment env) {
+		Object value = upvalue ? env.upvalues[slot] : env.getAt(slot); 
+		return boxed ? ((Cell) value).value : value; 
+	}
+	
+	//a captured local that is assigned is always boxed . 
+	void set(Environment env,Object value) {
+		if(boxed) {
+			((Cell) (upvalue ? env.upvalues[slot] : env.getAt(slot))).value = value; 
+		} else {
+			env.assignAt(slot, value); 
+		}
+	}
+}
@@ -3,9 +3,13 @@ package lox;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -14,11 +18,26 @@ public class Lox {
 	static boolean hadError = false;
 	static boolean hadRuntimeError = false; 
 	public static final Interpreter interpreter = new Interpreter(); 
+	//the bytecode engine , it is used instead of the interpreter when the --vm flag is given . 
+	private static VM vm = null; 
+	//the directory of the syntax tree cache (check AstCache) , given with the --cache flag , null when scripts are not cached . 
+	private static Path cache = null; 
 	
 	//if there is one argument consider it as a path for a lox script else run the shell (where we execute line by line e.g python shell). 
 	public static void main(String[] args) throws IOException {
+		int flags = 0; 
+		for(; flags < args.length; flags++) {
+			if(args[flags].equals("--vm")) {
+				vm = new VM(); 
+			} else if(args[flags].equals("--cache") && flags + 1 < args.length) {
+				cache = Paths.get(args[++flags]); 
+			} else {
+				break; 
+			}
+		}
+		args = Arrays.copyOfRange(args, flags, args.length); 
 		if(args.length > 1) {
-			System.out.println("Usage: java lox");
+			System.out.println("Usage: java lox [--vm] [--cache directory] [script]");
 		}else if(args.length == 1) {
 			runFile(args[0]);
 		}else {
@@ -28,8 +47,24 @@ public class Lox {
 	
 	//running methods runFile and runPrompt they are a wrapper for the run method 
 	private static void runFile(String path) throws IOException {
-		byte[] bytes = Files.readAllBytes(Paths.get(path));
-		run(new String (bytes,Charset.defaultCharset()));
+		//the file is mapped and not read , the scanner decodes it as the parser gets to it . 
+		ByteBuffer bytes; 
+		try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); 
+		}
+		Charset charset = Charset.defaultCharset(); 
+		if(cache == null) {
+			run(new Scanner(bytes,charset));
+		} else {
+			//the tree is stored before it runs , the interpreter keeps its runtime state in the nodes . 
+			Path entry = cache.resolve(AstCache.key(bytes, charset) + ".ast"); 
+			List<Stmt> statements = AstCache.load(entry); 
+			if(statements == null) {
+				statements = parse(new Scanner(bytes,charset)); 
+				if(statements != null) AstCache.store(entry, statements); 
+			}
+			if(statements != null) execute(statements); 
+		}
 		if(hadError) System.exit(65);
 		if(hadRuntimeError) System.exit(70);
 	}
@@ -67,6 +102,8 @@ public class Lox {
 					System.out.println(((LoxClass)value).toString()); 
 				} else if (value instanceof Boolean) {
 					System.out.println((Boolean)value);
+				} else {
+					System.out.println(value); 
 				}
 			}
 			hadError = false;
@@ -85,18 +122,46 @@ public class Lox {
 	 * Runtime errors : errors produced in the interpreting stage will be a runtime errors and will stop the program . 
 	 */
 	private static Object run(String source) {	
-		Scanner scanner = new Scanner(source);
-		List<Token> tokens = scanner.scanTokens();
-		Parser parser = new Parser(tokens);
+		return run(new Scanner(source)); 
+	}
+	
+	private static Object run(Scanner scanner) {	
+		List<Stmt> statements = parse(scanner); 
+		if(statements == null) return null; 
+		return execute(statements); 
+	}
+	
+	//runs resolved statements on the vm or the interpreter . 
+	private static Object execute(List<Stmt> statements) {
+		if(vm != null) {
+			VM.Function script = new Compiler().compile(statements); 
+			if(hadError) return null; 
+			return vm.interpret(script); 
+		}
+		return interpreter.interpret(statements);
+	}
+	
+	//the resolved statements of the source , null when it has errors (they are reported) . 
+	private static List<Stmt> parse(Scanner scanner) {
+		Parser parser = new Parser(scanner);
 		List<Stmt> statements = parser.parse();
 		
 		if(hadError) return null; 
-		Resolver resolver = new Resolver(interpreter); 
+		Resolver resolver = new Resolver(); 
 	    resolver.resolve(statements); 
 		
 		if(hadError) return null; 
-		
-		return interpreter.interpret(statements);
+		return statements; 
+	}
+	
+	//compiles the source for the vm without running it (e.g. for a ScriptTask) , null when it has errors (they are reported) . 
+	//the error flags are shared by the whole process , so the scripts are compiled by one thread at a time . 
+	static synchronized VM.Function compile(String source) {
+		hadError = false; 
+		List<Stmt> statements = parse(new Scanner(source)); 
+		if(statements == null) return null; 
+		VM.Function script = new Compiler().compile(statements); 
+		return hadError ? null : script; 
 	}
 	
 	//Error Handling 
@@ -1,9 +1,11 @@
 package lox;
 
-import java.util.List; 
-
-
+/* the arguments of a call are passed in an array that has exactly arity elements (the caller checked the count) , 
+ * the callee may keep it but must not change it . 
+ */
 interface LoxCallable {
-	Object call(Interpreter interpreter,List<Object> arguments); 
+	Object[] NO_ARGUMENTS = new Object[0]; 
+	
+	Object call(Interpreter interpreter,Object[] arguments); 
 	int arity(); 
 }
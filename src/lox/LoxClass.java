@@ -1,68 +1,112 @@
 package lox;
 
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map; 
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class LoxClass extends LoxInstance implements LoxCallable  {
 	final String name ; 
 	final LoxClass superClass; 
-	private final Map<String,LoxFunction> methods; 
+	//the methods of the class and the ones it inherits , a method of the class overrides the inherited one . 
+	private final Map<String,LoxFunction> methods = new HashMap<>(); 
 	private final Map<String,LoxFunction> staticMethods; 
+	//the initializer that constructs the class (its own init or the inherited one) , looked up once . 
+	private final LoxFunction init; 
+	//how many static fields of any class were assigned , a static member that a site found before the last assignment may have changed (check get(Expr.Get)) . 
+	//the classes of the interpreters of every thread bump it , so it is atomic . 
+	private static final AtomicInteger assignments = new AtomicInteger(); 
+	//how many fields the last instance had when it was constructed , the next instance reserves that many (check LoxInstance.add) . 
+	private int fields = 0; 
 	
 	
 	LoxClass(String name,LoxClass superClass, Map<String,LoxFunction> methods,Map<String,LoxFunction> staticMethods){
 		super(null); 
 		this.name = name; 
-		this.methods = methods; 
+		if(superClass != null) {
+			this.methods.putAll(superClass.methods); 
+		}
+		this.methods.putAll(methods); 
+		this.init = this.methods.get("init"); 
 		this.staticMethods = staticMethods; 
 		this.superClass = superClass; 
 	}
 	
 	public LoxFunction findMethod(LoxInstance instance , String name) {
-		if(methods.containsKey(name)) {
-			return methods.get(name).bind(instance); 
-		}
-		if(superClass != null) {
-			return superClass.findMethod(instance, name); 
+		LoxFunction method = methods.get(name); 
+		if(method != null) {
+			return method.bind(instance); 
 		}
 		return null;
 	}
 	
+	LoxFunction findMethod(String name) {
+		return methods.get(name); 
+	}
+	
 	@Override 
 	public String toString() {
 		return name; 
 	}
 
 	@Override
-	public Object call(Interpreter interpreter, List<Object> arguments) {
-		LoxInstance instance = new LoxInstance(this);
-		LoxFunction init = methods.get("init");
+	public Object call(Interpreter interpreter, Object[] arguments) {
+		LoxInstance instance = new LoxInstance(this,fields);
 		if(init != null) {
-			init.bind(instance).call(interpreter, arguments);
+			init.call(interpreter, instance, arguments);
+			fields = instance.shape.size(); 
 		}
 		return instance; 
 	}
 
 	@Override
 	public int arity() {
-		LoxFunction init = methods.get("init"); 
 		if(init != null ) return init.arity(); 
 		return 0;
 	}
 	
 
-	public Object get(Token name) {
-		if(fields.containsKey(name.lexeme)) {
-			return fields.get(name.lexeme); 
-		}
-		if(staticMethods.containsKey(name.lexeme)) {
-			return staticMethods.get(name.lexeme); 
+	/* the site keeps the static member it found with the class it found it in , the static methods never change 
+	 * so the member is looked up again only for another class or after a static field (of any class) was assigned . 
+	 * the count is read before the lookup and a field is counted after it is stored , so a member found during an assignment 
+	 * is kept with the count from before it and is looked up again . 
+	 */
+	@Override
+	Object get(Expr.Get expr) {
+		int version = assignments.get(); 
+		if(expr.owner != this || expr.version != version) {
+			expr.member = get(expr.name); 
+			expr.owner = this; 
+			expr.version = version; 
 		}
-		if(superClass != null) {
-			return superClass.get(name); 
+		return expr.member; 
+	}
+
+	//a static field of the class , then a static method of the class , then the static members of the superclasses in the same order . 
+	public Object get(Token name) {
+		for(LoxClass klass = this; klass != null; klass = klass.superClass) {
+			int slot = klass.shape.slot(name.lexeme); 
+			if(slot >= 0) {
+				return klass.values[slot]; 
+			}
+			LoxFunction method = klass.staticMethods.get(name.lexeme); 
+			if(method != null) {
+				return method; 
+			}
 		}
 		throw new RuntimeError(name,"Undefined static property " + name.lexeme + " .");
 	}
 	
+	@Override
+	public void set(Token name,Object value) {
+		super.set(name, value); 
+		assignments.incrementAndGet(); 
+	}
+	
+	@Override
+	void set(Expr.Set expr,Object value) {
+		super.set(expr, value); 
+		assignments.incrementAndGet(); 
+	}
+	
 }
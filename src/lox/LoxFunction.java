@@ -1,38 +1,72 @@
 package lox;
 
-import java.util.List;
-
 public class LoxFunction implements LoxCallable {
 	private final Stmt.Function function ; 
-	private final Environment closure ; 
+	//the variables of the enclosing functions that the function uses , copied when it was created (check Resolver.upvalue) . 
+	private final Object[] closure ; 
 	private final Boolean isInit; 
+	//the instance a bound method is called on , null for functions and methods that are not bound . 
+	private final LoxInstance receiver; 
 		
-	public LoxFunction(Stmt.Function function, Environment closure,Boolean isInit) {
+	public LoxFunction(Stmt.Function function, Object[] closure,Boolean isInit) {
+		this(function,closure,isInit,null); 
+	}
+	
+	private LoxFunction(Stmt.Function function, Object[] closure,Boolean isInit,LoxInstance receiver) {
 		this.function = function; 
 		this.closure = closure; 
 		this.isInit = isInit;
+		this.receiver = receiver; 
 	}
 	
+	//only used when a method is taken as a value , a call of a method does not bind it (check call(Interpreter,LoxInstance,Object[])) . 
 	public LoxFunction bind(LoxInstance instance) {
-		Environment env = new Environment(closure); 
-		env.define("this", instance);
-		return new LoxFunction(function , env,false); 
+		return new LoxFunction(function , closure,isInit,instance); 
 	}
 	
 	@Override
-	public Object call(Interpreter interpreter, List<Object> arguments) {
-		Environment env = new Environment(closure);
-		for(int i=0 ; i<function.parameters.size(); i++) {
-			env.define(function.parameters.get(i).lexeme, arguments.get(i));
-		}
-		try {
-	    interpreter.executeBlock(function.body, env);
-		} catch(ReturnValue e) {
-			if(isInit) return closure.getAt(0,"this"); 
-			return e.value; 
+	public Object call(Interpreter interpreter, Object[] arguments) {
+		return call(interpreter,receiver,arguments); 
+	}
+	
+	/* calls the function with instance as 'this' , it is the first slot of the environment of a method (null for functions) . 
+	 * when the function ends with a call in tail position (check Interpreter.tailCall) the callee runs in the same loop , 
+	 * the function is done so only its result is needed and this java frame is reused . 
+	 */
+	Object call(Interpreter interpreter,LoxInstance instance, Object[] arguments) {
+		LoxFunction callee = this; 
+		for(;;) {
+			Stmt.Function function = callee.function; 
+			Environment env = new Environment(callee.closure);
+			if(instance != null) env.define(instance);
+			for(Object argument : arguments) {
+				env.define(argument);
+			}
+			for(int slot : function.boxedParameters) {
+				env.assignAt(slot, new Cell(env.getAt(slot)));
+			}
+			Completion completion = interpreter.executeBlock(function.body, env);
+			if(callee.isInit) return instance;
+			if(completion == Completion.TAIL_CALL) {
+				callee = interpreter.tailFunction; 
+				instance = interpreter.tailReceiver != null ? interpreter.tailReceiver : callee.receiver; 
+				arguments = interpreter.tailArguments; 
+				interpreter.tailFunction = null; 
+				interpreter.tailReceiver = null; 
+				interpreter.tailArguments = null; 
+				continue; 
+			}
+			if(completion == Completion.RETURN) {
+				Object value = interpreter.returnValue; 
+				interpreter.returnValue = null; 
+				return value; 
+			}
+			return null;
 		}
-		if(isInit) return closure.getAt(0,"this");
-		return null;
+	}
+	
+	boolean isInit() {
+		return isInit; 
 	}
 	
 	@Override
@@ -1,19 +1,26 @@
 package lox;
 
-import java.util.Map;
-import java.util.HashMap; 
-
 public class LoxInstance {
+	private static final Object[] NO_VALUES = new Object[0]; 
 	private final LoxClass klass ; 
-	protected final Map<String,Object> fields = new HashMap<>(); 
+	//the fields of the instance : shape maps the name of a field to its slot in values (check Shape) . 
+	Shape shape = Shape.EMPTY; 
+	Object[] values = NO_VALUES; 
 	
 	LoxInstance(LoxClass klass){
 		this.klass = klass; 
 	}
 	
+	//an instance that has room for fields fields before its values grow . 
+	LoxInstance(LoxClass klass,int fields){
+		this.klass = klass; 
+		if(fields > 0) values = new Object[fields]; 
+	}
+	
 	public Object get(Token name) {
-		if(fields.containsKey(name.lexeme)) {
-			return fields.get(name.lexeme); 
+		int slot = shape.slot(name.lexeme); 
+		if(slot >= 0) {
+			return values[slot]; 
 		}
 		
 		LoxFunction fun = klass.findMethod(this, name.lexeme); 
@@ -21,8 +28,66 @@ public class LoxInstance {
 		throw new RuntimeError(name,"Undefined property '" + name.lexeme + "' ." ); 
 	}
 	
+	//like get but the slot of the field and the method are cached on the expression (check InlineCache) . 
+	Object get(Expr.Get expr) {
+		int slot = slot(expr); 
+		if(slot >= 0) {
+			return values[slot]; 
+		}
+		
+		return method(expr).bind(this); 
+	}
+	
+	//the slot of the field that the expression names or -1 , it is looked up again only when the shape is not the one the expression saw last . 
+	int slot(Expr.Get expr) {
+		if(expr.shape != shape) {
+			expr.slot = shape.slot(expr.name.lexeme); 
+			expr.shape = shape; 
+		}
+		return expr.slot; 
+	}
+	
+	//the method of the class of the instance that the expression names , the fields are not checked . 
+	LoxFunction method(Expr.Get expr) {
+		LoxFunction fun = expr.cache.lookup(klass, expr.name.lexeme); 
+		if(fun != null) return fun; 
+		throw new RuntimeError(expr.name,"Undefined property '" + expr.name.lexeme + "' ." ); 
+	}
+	
 	public void set(Token name , Object value) {
-		fields.put(name.lexeme, value); 
+		int slot = shape.slot(name.lexeme); 
+		if(slot < 0) {
+			slot = add(shape.with(name.lexeme)); 
+		}
+		values[slot] = value; 
+	}
+	
+	/* like set but the expression caches what it did for the last shape it saw : the slot of the field
+	 * and the shape the instance moves to when the field is new to it (null when it already has the field) . 
+	 */
+	void set(Expr.Set expr , Object value) {
+		if(expr.shape != shape) {
+			expr.shape = shape; 
+			expr.slot = shape.slot(expr.name.lexeme); 
+			expr.next = expr.slot < 0 ? shape.with(expr.name.lexeme) : null; 
+		}
+		int slot = expr.slot; 
+		if(expr.next != null) {
+			slot = add(expr.next); 
+		}
+		values[slot] = value; 
+	}
+	
+	//moves the instance to next , a shape with one more field than its shape , and returns the slot of the new field . 
+	private int add(Shape next) {
+		int slot = shape.size(); 
+		if(slot == values.length) {
+			Object[] grown = new Object[Math.max(4, slot * 2)]; 
+			System.arraycopy(values, 0, grown, 0, slot); 
+			values = grown; 
+		}
+		shape = next; 
+		return slot; 
 	}
 	
 	@Override
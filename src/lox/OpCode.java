@@ -0,0 +1,54 @@
+package lox;
+
+/* the instruction set of the bytecode engine (check Compiler and VM classes).
+ * every instruction is one byte followed by its operands , a "short" operand is two bytes (high byte first)
+ * and it is an index in the constant pool of the chunk or a jump offset , a "byte" operand is a slot or a count .
+ */
+final class OpCode {
+	static final byte CONSTANT = 0;        // short constant
+	static final byte NIL = 1;
+	static final byte TRUE = 2;
+	static final byte FALSE = 3;
+	static final byte POP = 4;
+	static final byte GET_LOCAL = 5;       // byte slot
+	static final byte SET_LOCAL = 6;       // byte slot
+	static final byte GET_GLOBAL = 7;      // short name
+	static final byte DEFINE_GLOBAL = 8;   // short name
+	static final byte SET_GLOBAL = 9;      // short name
+	static final byte GET_UPVALUE = 10;    // byte index
+	static final byte SET_UPVALUE = 11;    // byte index
+	static final byte GET_PROPERTY = 12;   // short name
+	static final byte SET_PROPERTY = 13;   // short name
+	static final byte GET_SUPER = 14;      // short name
+	static final byte EQUAL = 15;
+	static final byte NOT_EQUAL = 16;
+	static final byte GREATER = 17;
+	static final byte GREATER_EQUAL = 18;
+	static final byte LESS = 19;
+	static final byte LESS_EQUAL = 20;
+	static final byte ADD = 21;
+	static final byte SUBTRACT = 22;
+	static final byte MULTIPLY = 23;
+	static final byte DIVIDE = 24;
+	static final byte BITWISE_AND = 25;
+	static final byte BITWISE_OR = 26;
+	static final byte XOR = 27;
+	static final byte NOT = 28;
+	static final byte NEGATE = 29;
+	static final byte PRINT = 30;
+	static final byte JUMP = 31;           // short forward offset
+	static final byte JUMP_IF_FALSE = 32;  // short forward offset , the condition stays on the stack
+	static final byte LOOP = 33;           // short backward offset
+	static final byte CALL = 34;           // byte argument count
+	static final byte INVOKE = 35;         // short name , byte argument count
+	static final byte SUPER_INVOKE = 36;   // short name , byte argument count
+	static final byte CLOSURE = 37;        // short function , then (byte isLocal , byte index) for every upvalue
+	static final byte CLOSE_UPVALUE = 38;
+	static final byte RETURN = 39;
+	static final byte CLASS = 40;          // short name
+	static final byte INHERIT = 41;
+	static final byte METHOD = 42;         // short name
+	static final byte STATIC_METHOD = 43;  // short name
+
+	private OpCode() {}
+}
@@ -3,21 +3,42 @@ package lox;
 import java.util.List;
 import java.util.ArrayList; 
 import java.util.Arrays; 
+import java.util.function.Supplier; 
 
 
 import static lox.TokenType.*;
 import lox.Lox;
 
+/* the parser looks one token ahead : it keeps the next token and the one it consumed last , and takes a new one from tokens 
+ * when it advances . the tokens come from a list or straight from a scanner , then the source is scanned as it is parsed . 
+ */
 public class Parser {
-	private final List<Token> tokens;
-	private int current = 0;
+	private final Supplier<Token> tokens;
+	private Token next;
+	private Token previous = null;
 	
 	@SuppressWarnings("serial")
 	private static class ParseError extends RuntimeException {}
 	
 	Parser(List<Token> to)
 	{
-		this.tokens = to;
+		this(to.iterator()::next);
+	}
+	
+	Parser(TokenBuffer tokens)
+	{
+		this(tokens.reader());
+	}
+	
+	Parser(Scanner scanner)
+	{
+		this(scanner::nextToken);
+	}
+	
+	private Parser(Supplier<Token> tokens)
+	{
+		this.tokens = tokens;
+		this.next = tokens.get();
 	}
 	
 	List<Stmt> parse() {
@@ -445,7 +466,7 @@ public class Parser {
 	}
 	
 	private Token peek() {
-		return this.tokens.get(current); 
+		return next; 
 	}
 	
 	private boolean check(TokenType type) {
@@ -463,7 +484,10 @@ public class Parser {
 	}
 	
 	private Token advance() {
-		if(!isAtEnd()) current++; 
+		if(!isAtEnd()) {
+			previous = next; 
+			next = tokens.get(); 
+		}
 		return previous(); 
 	}
 	
@@ -472,7 +496,7 @@ public class Parser {
 	}
 	
 	private Token previous() {
-		return this.tokens.get(current-1); 
+		return previous; 
 	}
 	
 	void synchronize() {
@@ -1,5 +1,6 @@
 package lox;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List; 
 import java.util.Map;
@@ -34,21 +35,17 @@ import lox.Stmt.While;
 
 
 public class Resolver implements Stmt.Visitor<Void>,Expr.Visitor<Object> {
-	private final Interpreter interpreter; 
-	private final Stack<Map<String,VariableState>> scopes = new Stack<>(); 
+	private final Stack<Scope> scopes = new Stack<>(); 
+	private final List<Reference> references = new ArrayList<>(); 
 	private FunctionType currentFunction = FunctionType.NONE; 
 	private inLoop currentBlock = inLoop.NO;
 	private ClassType currentClass = ClassType.NONE;
 	
-	Resolver(Interpreter interpreter){
-		this.interpreter = interpreter; 
-	}
-	
-	
 	private enum FunctionType {
 		NONE,
 		FUNCTION,
 		METHOD,
+		STATIC_METHOD,
 		INIT
 	}
 	
@@ -58,6 +55,90 @@ public class Resolver implements Stmt.Visitor<Void>,Expr.Visitor<Object> {
 		USED , 
 	}
 
+	/* a local declared in a scope , slot is its index in the environment of the frame that holds it at runtime . 
+	 * a local that a nested function uses is captured : the closure copies it when it is created , unless the local is assigned 
+	 * or the closure is created before the local is initialized (e.g. a recursive function) , then the local is boxed in a Cell 
+	 * and the closure shares the box . 
+	 */
+	private static class Declaration {
+		VariableState state; 
+		final int slot; 
+		final Scope frame; 
+		//the statement that declares the local (null for parameters , 'this' and 'super') , it is told when the local is boxed . 
+		final Stmt statement; 
+		boolean initialized = false; 
+		boolean assigned = false; 
+		boolean captured = false; 
+		boolean capturedEarly = false; 
+		
+		Declaration(VariableState state,int slot,Scope frame,Stmt statement){
+			this.state = state; 
+			this.slot = slot; 
+			this.frame = frame; 
+			this.statement = statement; 
+		}
+		
+		boolean boxed() {
+			return captured && (assigned || capturedEarly); 
+		}
+	}
+
+	/* a scope of the program and the locals declared in it . a function is a frame : it has an environment at runtime that holds 
+	 * its locals and the locals of every block and class in it , the scopes in a function are elided (they have no environment) 
+	 * and their locals take the next free slots of the frame . a top level block (or the scope of 'super' of a top level class) 
+	 * is the frame of the scopes in it , it is elided too when nothing is declared in it . 
+	 */
+	@SuppressWarnings("serial")
+	private static class Scope extends HashMap<String,Declaration> {
+		final Scope enclosing; 
+		final Stmt.Block block; 
+		final boolean function; 
+		final Scope frame; 
+		//the slot of the first local of the scope in its frame , the locals of the enclosing scopes come before it . 
+		final int base; 
+		//a local is declared in the frame (in it or in a scope in it) . 
+		boolean hosting = false; 
+		//the locals of the enclosing frame that the function captures (only for functions , check upvalue) . 
+		final List<Declaration> upvalues = new ArrayList<>(); 
+		final List<Integer> captures = new ArrayList<>(); 
+		
+		Scope(Scope enclosing,Stmt.Block block,boolean function){
+			this.enclosing = enclosing; 
+			this.block = block; 
+			this.function = function; 
+			if(function || enclosing == null) {
+				this.frame = this; 
+				this.base = 0; 
+			} else {
+				this.frame = enclosing.frame; 
+				this.base = enclosing.base + enclosing.size(); 
+			}
+		}
+	}
+	
+	/* a use of a local , its Location is stored in the node once the whole program is resolved , when it is known whether the local is boxed . 
+	 * location is a slot of the current frame , or -1 - i for the i'th captured variable of the current function . 
+	 */
+	private static class Reference {
+		final Expr expr; 
+		final Declaration declaration; 
+		final int location; 
+		
+		Reference(Expr expr,Declaration declaration,int location){
+			this.expr = expr; 
+			this.declaration = declaration; 
+			this.location = location; 
+		}
+		
+		void resolve() {
+			Location local = new Location(location,declaration.boxed()); 
+			if(expr instanceof Expr.Variable) ((Expr.Variable) expr).local = local; 
+			if(expr instanceof Expr.Assign) ((Expr.Assign) expr).local = local; 
+			if(expr instanceof Expr.This) ((Expr.This) expr).local = local; 
+			if(expr instanceof Expr.Super) ((Expr.Super) expr).local = local; 
+		}
+	}
+
 	private enum inLoop {
 		YES , 
 		NO
@@ -79,7 +160,8 @@ public class Resolver implements Stmt.Visitor<Void>,Expr.Visitor<Object> {
 	@Override
 	public Object visitAssignExpr(Assign expr) {
 		resolve(expr.value);  
-		resolveLocal(expr,expr.name); 
+		Declaration local = resolveLocal(expr,expr.name); 
+		if(local != null) local.assigned = true; 
 		return null;
 	}
 
@@ -110,7 +192,7 @@ public class Resolver implements Stmt.Visitor<Void>,Expr.Visitor<Object> {
 
 	@Override
 	public Object visitVariableExpr(Variable expr) {
-		if( !scopes.isEmpty() && scopes.peek().get(expr.name.lexeme) == VariableState.DECLARED)
+		if( !scopes.isEmpty() && scopes.peek().containsKey(expr.name.lexeme) && scopes.peek().get(expr.name.lexeme).state == VariableState.DECLARED)
 				Lox.error(expr.name, "Cannot read local Variable on its own initalizer .");
 		resolveLocal(expr,expr.name); 
 		return null;
@@ -146,7 +228,7 @@ public class Resolver implements Stmt.Visitor<Void>,Expr.Visitor<Object> {
 
 	@Override
 	public Void visitBlockStmt(Block stmt) {
-		beginScope(); 
+		beginScope(stmt,false); 
 		resolve(stmt.statements); 
 		endScope(stmt.paren);
 		return null;
@@ -154,10 +236,11 @@ public class Resolver implements Stmt.Visitor<Void>,Expr.Visitor<Object> {
 
 	@Override
 	public Void visitFunctionStmt(Function stmt) {
-		declare(stmt.name); 
+		declare(stmt.name,stmt); 
 		define(stmt.name); 
 		used(stmt.name); 
 		resolveFunction(stmt,FunctionType.FUNCTION); 
+		initialized(stmt.name); 
 		return null;
 	}
 
@@ -177,10 +260,11 @@ public class Resolver implements Stmt.Visitor<Void>,Expr.Visitor<Object> {
 
 	@Override
 	public Void visitVarStmt(Var stmt) {
-		declare(stmt.name); 
+		declare(stmt.name,stmt); 
 		if(stmt.initializer != null) 
 			resolve(stmt.initializer); 
 		define(stmt.name); 
+		initialized(stmt.name); 
 		if(stmt.initializer != null)
 			used(stmt.name); 
 		return null;
@@ -222,6 +306,8 @@ public class Resolver implements Stmt.Visitor<Void>,Expr.Visitor<Object> {
 				Lox.error(stmt.keyword, "Cannot return a value from init.");
 			}
 			resolve(stmt.value); 
+			//the value of the function is the value of the call , so the function can end before the call is made . 
+			stmt.tailCall = stmt.value instanceof Expr.Call && currentFunction != FunctionType.INIT; 
 		}
 		return null;
 	}
@@ -230,6 +316,19 @@ public class Resolver implements Stmt.Visitor<Void>,Expr.Visitor<Object> {
 		for(Stmt stat : statements) {
 			resolve(stat); 
 		}
+		//the top level is resolved so every local is known to be boxed or not . 
+		if(scopes.isEmpty()) {
+			for(Reference reference : references) {
+				reference.resolve(); 
+				Stmt statement = reference.declaration.statement; 
+				if(reference.declaration.boxed()) {
+					if(statement instanceof Stmt.Var) ((Stmt.Var) statement).boxed = true; 
+					if(statement instanceof Stmt.Function) ((Stmt.Function) statement).boxed = true; 
+					if(statement instanceof Stmt.Class) ((Stmt.Class) statement).boxed = true; 
+				}
+			}
+			references.clear(); 
+		}
 	}
 	
 	private void resolve(Stmt stat) {
@@ -240,25 +339,56 @@ public class Resolver implements Stmt.Visitor<Void>,Expr.Visitor<Object> {
 		expr.accept(this); 
 	}
 	
-	private void resolveLocal(Expr expr,Token name) {
+	private Declaration resolveLocal(Expr expr,Token name) {
+		Declaration local = lookup(name.lexeme); 
+		if(local != null) {
+			local.state = VariableState.USED; 
+			references.add(new Reference(expr,local,locate(local))); 
+		}
+		return local; 
+	}
+	
+	private Declaration lookup(String name) {
 		for(int i=scopes.size()-1; i>= 0; i--) {
-			if(scopes.get(i).containsKey(name.lexeme)) {
-				used(name); 
-				interpreter.resolve(expr,scopes.size()-1-i); 
-			}
+			Declaration local = scopes.get(i).get(name); 
+			if(local != null) return local; 
 		}
+		return null; 
+	}
+	
+	//where the current function finds the local (check Reference) . 
+	private int locate(Declaration local) {
+		Scope frame = scopes.peek().frame; 
+		if(local.frame == frame) return local.slot; 
+		return -1 - upvalue(frame,local); 
+	}
+	
+	/* the index of the local in the variables that the function captures , a local of a frame further out is captured by every function 
+	 * in between (a function captures only from the frame that encloses it : a slot of that frame or a captured variable of that function) . 
+	 */
+	private int upvalue(Scope function,Declaration local) {
+		int index = function.upvalues.indexOf(local); 
+		if(index >= 0) return index; 
+		local.captured = true; 
+		if(!local.initialized) local.capturedEarly = true; 
+		Scope outer = function.enclosing.frame; 
+		function.upvalues.add(local); 
+		function.captures.add(outer == local.frame ? local.slot : -1 - upvalue(outer,local)); 
+		return function.upvalues.size() - 1; 
 	}
 	
 	private void resolveFunction(Stmt.Function stmt,FunctionType type) {
 		FunctionType enclosingFunction = currentFunction ; 
 		currentFunction = type; 
-		beginScope();
-		for(Token parm : stmt.parameters ) {
-			declare(parm); 
-			define(parm); 
-			used(parm); 
+		beginScope(null,true);
+		//'this' is the first slot of the environment of a method , the parameters come after it . 
+		if(type == FunctionType.METHOD || type == FunctionType.INIT) {
+			declareInitialized("this"); 
 		}
+		parameters(stmt.parameters); 
 		resolve(stmt.body); 
+		stmt.captures = captures(); 
+		stmt.boxedParameters = boxedParameters(stmt.parameters); 
 		endScope(stmt.name); 
 		currentFunction = enclosingFunction ;  
 	}
@@ -266,92 +396,147 @@ public class Resolver implements Stmt.Visitor<Void>,Expr.Visitor<Object> {
 	private void resolveFunction(Expr.FunExpr stmt,FunctionType type) {
 		FunctionType enclosingFunction = currentFunction; 
 		currentFunction = type ; 
-		beginScope();
-		for(Token parm : stmt.parameters ) {
-			declare(parm); 
-			define(parm); 
-			used(parm); 
-		}
+		beginScope(null,true);
+		parameters(stmt.parameters); 
 		resolve(stmt.body); 
+		stmt.captures = captures(); 
+		stmt.boxedParameters = boxedParameters(stmt.parameters); 
 		endScope(stmt.paren); 
 		currentFunction = enclosingFunction; 
 		return; 
 	}
 	
-	private void beginScope() {
-		scopes.push(new HashMap<String,VariableState>()); 
+	private void parameters(List<Token> parameters) {
+		for(Token parm : parameters ) {
+			declare(parm,null); 
+			define(parm); 
+			initialized(parm); 
+			used(parm); 
+		}
+	}
+	
+	//the variables the closure of the current function copies when it is created (check Reference for the locations) . 
+	private int[] captures() {
+		List<Integer> captures = scopes.peek().captures; 
+		int[] locations = new int[captures.size()]; 
+		for(int i = 0; i < locations.length; i++) {
+			locations[i] = captures.get(i); 
+		}
+		return locations; 
+	}
+	
+	//the slots of the parameters that are boxed when the function is called , every use of a parameter is in the function so it is known . 
+	private int[] boxedParameters(List<Token> parameters) {
+		List<Integer> boxed = new ArrayList<>(); 
+		for(Token parm : parameters) {
+			Declaration local = scopes.peek().get(parm.lexeme); 
+			if(local != null && local.boxed()) boxed.add(local.slot); 
+		}
+		int[] slots = new int[boxed.size()]; 
+		for(int i = 0; i < slots.length; i++) {
+			slots[i] = boxed.get(i); 
+		}
+		return slots; 
+	}
+	
+	private void beginScope(Stmt.Block block,boolean function) {
+		scopes.push(new Scope(scopes.isEmpty() ? null : scopes.peek(),block,function)); 
 	}
 	
 	private void endScope(Token name) { 
 		usedVariable(name);
-		scopes.pop(); 
+		Scope scope = scopes.pop(); 
+		//a top level block is a frame only if it holds locals (its own or of the scopes in it) . 
+		if(scope.block != null) scope.block.elided = scope.frame != scope || !scope.frame.hosting; 
 	}
 	
 	private void usedVariable(Token name) {
-		Map<String,VariableState> scope = scopes.peek(); 
+		Map<String,Declaration> scope = scopes.peek(); 
 	
-		for (Entry<String,VariableState> entr: scope.entrySet()) {
+		for (Entry<String,Declaration> entr: scope.entrySet()) {
 			String key = entr.getKey();
-			if(scope.get(key) != VariableState.USED ){
+			if(entr.getValue().state != VariableState.USED ){
 				Lox.error(name.line, "Local Variable " + key + " in this block is never used.");
 			}
 		}
 	}
 	
-	private void declare(Token name) {
+	private void declare(Token name,Stmt statement) {
 		if(scopes.isEmpty()) return ; 
 		 
-		Map<String,VariableState> scope = scopes.peek();
+		Scope scope = scopes.peek();
 		
 		if(scope.containsKey(name.lexeme)) {
 			Lox.error(name.line, "a Variable with the same name already declared in this scope. ");
+			return; 
 		}
-		scope.put(name.lexeme, VariableState.DECLARED); 
+		scope.put(name.lexeme, new Declaration(VariableState.DECLARED,scope.base + scope.size(),scope.frame,statement)); 
+		scope.frame.hosting = true; 
+	}
+	
+	//'this' and 'super' are declared by the interpreter , they are initialized before any code can use them . 
+	private void declareInitialized(String name) {
+		Scope scope = scopes.peek(); 
+		Declaration local = new Declaration(VariableState.USED,scope.base + scope.size(),scope.frame,null); 
+		local.initialized = true; 
+		scope.put(name, local);
+		scope.frame.hosting = true; 
 	}
 	
 	private void define(Token name) {
 		if(scopes.isEmpty()) return ; 
-		scopes.peek().put(name.lexeme,VariableState.DEFINED); 
+		scopes.peek().get(name.lexeme).state = VariableState.DEFINED; 
+	}
+	
+	//the local has its value , a closure created from now on can copy it . 
+	private void initialized(Token name) {
+		if(scopes.isEmpty()) return ; 
+		Declaration local = scopes.peek().get(name.lexeme); 
+		if(local != null) local.initialized = true; 
 	}
 	
 	private void used(Token name) {
-		if(scopes.isEmpty()) return; 
-		scopes.peek().put(name.lexeme, VariableState.USED); 
+		for(int i=scopes.size()-1; i>= 0; i--) {
+			Declaration local = scopes.get(i).get(name.lexeme); 
+			if(local != null) {
+				local.state = VariableState.USED; 
+				return; 
+			}
+		}
 	}
 
 	@Override
 	public Void visitClassStmt(Class stmt) {
 		ClassType enclosingClass = currentClass; 
 		currentClass = ClassType.CLASS;
-		declare(stmt.name); 
+		declare(stmt.name,stmt); 
 		if(stmt.superClass != null) {
 			currentClass = ClassType.SUBCLASS; 
 			resolve(stmt.superClass); 
 		}
 		define(stmt.name); 
 		if(stmt.superClass != null) {
-			beginScope(); 
-			scopes.peek().put("super",VariableState.USED);
+			beginScope(null,false); 
+			declareInitialized("super"); 
 		}
-		beginScope();
-		scopes.peek().put("this", VariableState.USED);
-		for(Stmt.Function method : stmt.methods) {
-			FunctionType declartion = FunctionType.METHOD; 
+		//static methods are not bound to an instance so they have no slot for 'this' . 
+		for(Stmt.Function method : stmt.staticMethods) {
+			FunctionType declartion = FunctionType.STATIC_METHOD; 
 			if(method.name.lexeme.equals("init")) {
-				declartion = FunctionType.INIT;
+				Lox.error(stmt.name, "init function of the class " + stmt.name.lexeme + " cannot be a static function 'remove class'.");
 			}
 			resolveFunction(method,declartion); 
 		}
-		for(Stmt.Function method : stmt.staticMethods) {
+		for(Stmt.Function method : stmt.methods) {
 			FunctionType declartion = FunctionType.METHOD; 
 			if(method.name.lexeme.equals("init")) {
-				Lox.error(stmt.name, "init function of the class " + stmt.name.lexeme + " cannot be a static function 'remove class'.");
+				declartion = FunctionType.INIT;
 			}
 			resolveFunction(method,declartion); 
 		}
 		used(stmt.name); 
-		endScope(stmt.name);
 		if(stmt.superClass != null) endScope(stmt.name); 
+		initialized(stmt.name); 
 		currentClass = enclosingClass; 
 		return null;
 	}
@@ -384,6 +569,17 @@ public class Resolver implements Stmt.Visitor<Void>,Expr.Visitor<Object> {
 			Lox.error(expr.keyword, "Cannot use 'super' outside a class.");
 		} else if (currentClass == ClassType.CLASS) {
 			Lox.error(expr.keyword, "Cannot use 'super' in a class with no superclass.");
+		} else {
+			//the method is called on 'this' of the method that uses super , a static method has none . 
+			Declaration self = null; 
+			for(int i = scopes.size() - 1; self == null && !scopes.get(i).containsKey("super"); i--) {
+				self = scopes.get(i).get("this"); 
+			}
+			if(self == null) {
+				Lox.error(expr.keyword, "Cannot use 'super' in a static method.");
+			} else {
+				expr.receiver = new Location(locate(self),false); 
+			}
 		}
 		resolveLocal(expr,expr.keyword); 
 		return null;
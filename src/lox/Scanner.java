@@ -1,55 +1,128 @@
 package lox;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import lox.TokenType;
 
+/* the scanner makes the tokens one at a time , when the parser asks for the next one (check nextToken) .
+ * the source is a string or the bytes of a file (e.g. a memory mapped file) , the bytes are decoded as the scanner reaches them
+ * in a window of characters that starts at the token being scanned , so only the window is in memory and not the whole decoded file .
+ * start and current are indexes in the window , they move back when the window drops the characters before start (check read) .
+ */
 public class Scanner {
-	private final List<Token> tokens = new ArrayList<>();
-	private final String source;
+	private static final int WINDOW = 8192;
+	private char[] buffer;
+	//how many characters of the window are read .
+	private int limit;
+	//the bytes that are not decoded yet , null when there are none left (or the source is a string) .
+	private ByteBuffer bytes;
+	private final CharsetDecoder decoder;
+	//the type of the token that scanToken found (from start to current) , null when it found none (e.g. a comment) .
+	private TokenType type = null;
+	//the symbol of the identifier or keyword that scanToken found (check Symbols) , it is the lexeme of the token .
+	private String name = null;
 	private int start = 0;
 	private int current = 0;
 	private int line = 1;
-	private static final Map<String, TokenType> keywords;
-	static {
-	keywords = new HashMap<>() ;
-	keywords.put("and", TokenType.AND) ;
-	keywords.put("class", TokenType.CLASS) ;
-	keywords.put("else", TokenType.ELSE) ;
-	keywords.put("false", TokenType.FALSE) ;
-	keywords.put("for", TokenType.FOR) ;
-	keywords.put("fun", TokenType.FUN) ;
-	keywords.put("if", TokenType.IF) ;
-	keywords.put("nil", TokenType.NIL) ;
-	keywords.put("or", TokenType.OR) ;
-	keywords.put("print", TokenType.PRINT) ;
-	keywords.put("return", TokenType.RETURN) ;
-	keywords.put("super", TokenType.SUPER) ;
-	keywords.put("this", TokenType.THIS) ;
-	keywords.put("true", TokenType.TRUE) ;
-	keywords.put("var", TokenType.VAR) ;
-	keywords.put("while", TokenType.WHILE) ;
-	keywords.put("break", TokenType.BREAK); 
-	keywords.put("continue", TokenType.CONTINUE); 
-	}
+	//the powers of ten that a double holds exactly (check parseNumber) .
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+	};
 	
 	Scanner(String source){
-		this.source = source;
+		this.buffer = source.toCharArray();
+		this.limit = buffer.length;
+		this.bytes = null;
+		this.decoder = null;
 	}
 	
+	//malformed bytes are replaced like new String(bytes,charset) does .
+	Scanner(ByteBuffer bytes,Charset charset){
+		this.buffer = new char[WINDOW];
+		this.limit = 0;
+		this.bytes = bytes;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
 	
-	List<Token> scanTokens(){
+	/* all the tokens at once in a TokenBuffer : a token is kept as its type and offsets in the source , no object is made for it .
+	 * the buffer slices the lexemes from the source later , so only a scanner of a string (that has the whole source) can fill one .
+	 */
+	TokenBuffer scanAll() {
+		if(decoder != null) throw new IllegalStateException("Only the tokens of a string can be buffered.");
+		TokenBuffer tokens = new TokenBuffer(buffer);
 		while(!isAtEnd()) {
 			start = current;
 			scanToken();
+			if(type != null) {
+				tokens.add(type,start,current - start,line);
+				type = null;
+				name = null;
+			}
 		}
-		
-		tokens.add(new Token(TokenType.EOF,"",null,line));
+		tokens.add(TokenType.EOF,current,0,line);
 		return tokens;
 	}
 	
+	//all the tokens at once , the last one is EOF .
+	List<Token> scanTokens(){
+		List<Token> tokens = new ArrayList<>();
+		Token next;
+		do {
+			next = nextToken();
+			tokens.add(next);
+		} while(next.type != TokenType.EOF);
+		return tokens;
+	}
+	
+	//scans the source up to the end of the next token , EOF once the source ended .
+	Token nextToken() {
+		while(!isAtEnd()) {
+			start = current;
+			scanToken();
+			if(type != null) {
+				int length = current - start;
+				String lexeme = name != null ? name : new String(buffer,start,length);
+				Token next = new Token(type,lexeme,literal(buffer,type,start,length),line);
+				type = null;
+				name = null;
+				return next;
+			}
+		}
+		return new Token(TokenType.EOF,"",null,line);
+	}
+	
+	/* decodes more of the bytes at the end of the window , returns false when there were none left .
+	 * the characters before start are not needed anymore , they are dropped first to make room .
+	 */
+	private boolean read() {
+		if(bytes == null) return false;
+		if(start > 0) {
+			System.arraycopy(buffer, start, buffer, 0, limit - start);
+			current -= start;
+			limit -= start;
+			start = 0;
+		}
+		//a token as long as the window , a character may need two chars (a surrogate pair) .
+		if(buffer.length - limit < 2) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		CharBuffer window = CharBuffer.wrap(buffer, limit, buffer.length - limit);
+		decoder.decode(bytes, window, true);
+		if(!bytes.hasRemaining()) {
+			decoder.flush(window);
+			bytes = null;
+		}
+		int read = window.position() - limit;
+		limit = window.position();
+		return read > 0;
+	}
+	
 	void scanToken() {
 		char c = advance();
 		switch(c) {
@@ -99,26 +172,50 @@ public class Scanner {
 	}
 	
 	private char advance() {
-		current++;
-		return source.charAt(current-1);
+		if(current >= limit) read();
+		return buffer[current++];
 	}
 	
 	private void addToken(TokenType type) {
-		addToken(type,null);
+		this.type = type;
 	}
 	
-	private void addToken(TokenType type,Object literal) {
-		String text = source.substring(start,current);
-		tokens.add(new Token(type,text,literal,line));
+	//the value of a string or number token that is length characters at start in source , null for the other tokens .
+	static Object literal(char[] source,TokenType type,int start,int length) {
+		switch(type) {
+		case STRING: return new String(source,start + 1,length - 2);
+		case NUMBER: return parseNumber(source,start,length);
+		default: return null;
+		}
+	}
+	
+	/* the value of a number literal (digits , maybe a dot and more digits) . a literal of at most 15 digits is an integer 
+	 * that a double holds exactly divided by an exact power of ten , the one division rounds it like Double.parseDouble does , 
+	 * so only the longer literals are parsed from a string . 
+	 */
+	static double parseNumber(char[] source,int start,int length) {
+		if(length > 15) return Double.parseDouble(new String(source,start,length));
+		long digits = 0;
+		int fraction = -1;
+		for(int i = start; i < start + length; i++) {
+			char c = source[i];
+			if(c == '.') {
+				fraction = 0;
+			} else {
+				digits = digits * 10 + (c - '0');
+				if(fraction >= 0) fraction++;
+			}
+		}
+		return fraction > 0 ? digits / POWERS_OF_TEN[fraction] : digits;
 	}
 	
 	private boolean isAtEnd() {
-		return current >= source.length();
+		return current >= limit && !read();
 	}
 
 	private boolean match(char expected) {
 		if(isAtEnd()) return false;
-		if(source.charAt(current) != expected) return false;
+		if(buffer[current] != expected) return false;
 		
 		current++;
 		return true;
@@ -126,12 +223,12 @@ public class Scanner {
 	
 	private char peek() {
 		if(isAtEnd()) return '\0';
-		return source.charAt(current);
+		return buffer[current];
 	}
 	
 	private char peekNext() {
-		if(current+1 >= source.length()) return '\0';
-		return source.charAt(current+1);
+		if(current+1 >= limit && (!read() || current+1 >= limit)) return '\0';
+		return buffer[current+1];
 	}
 	private void string() {
 		while(peek() != '"' && !isAtEnd()) {
@@ -146,8 +243,7 @@ public class Scanner {
 		
 		advance();
 		
-		String value = source.substring(start+1,current-1);
-		addToken(TokenType.STRING,value);
+		addToken(TokenType.STRING);
 		
 	}
 
@@ -160,18 +256,69 @@ public class Scanner {
 		while(isDigit(peek())) advance();
 		}
 		
-		addToken(TokenType.NUMBER,Double.parseDouble(source.substring(start,current)));
+		addToken(TokenType.NUMBER);
 	}
 
 	private void identifier() {
 		while(isAlphaNumeric(peek())) advance();
 		
-		String text = source.substring(start,current);
-		
-		TokenType type = keywords.get(text);
-		if(type == null) type = TokenType.IDENTIFIER;
+		TokenType type = keyword();
+		if(type == TokenType.IDENTIFIER) name = Symbols.intern(buffer,start,current - start);
 		addToken(type);
 	}
+	
+	//the keyword from start to current (by its first characters , then the rest of it) or IDENTIFIER , no string is made for it .
+	private TokenType keyword() {
+		switch(buffer[start]) {
+		case 'a': return keyword("and", TokenType.AND);
+		case 'b': return keyword("break", TokenType.BREAK);
+		case 'c':
+			if(current - start > 1) {
+				switch(buffer[start + 1]) {
+				case 'l': return keyword("class", TokenType.CLASS);
+				case 'o': return keyword("continue", TokenType.CONTINUE);
+				}
+			}
+			break;
+		case 'e': return keyword("else", TokenType.ELSE);
+		case 'f':
+			if(current - start > 1) {
+				switch(buffer[start + 1]) {
+				case 'a': return keyword("false", TokenType.FALSE);
+				case 'o': return keyword("for", TokenType.FOR);
+				case 'u': return keyword("fun", TokenType.FUN);
+				}
+			}
+			break;
+		case 'i': return keyword("if", TokenType.IF);
+		case 'n': return keyword("nil", TokenType.NIL);
+		case 'o': return keyword("or", TokenType.OR);
+		case 'p': return keyword("print", TokenType.PRINT);
+		case 'r': return keyword("return", TokenType.RETURN);
+		case 's': return keyword("super", TokenType.SUPER);
+		case 't':
+			if(current - start > 1) {
+				switch(buffer[start + 1]) {
+				case 'h': return keyword("this", TokenType.THIS);
+				case 'r': return keyword("true", TokenType.TRUE);
+				}
+			}
+			break;
+		case 'v': return keyword("var", TokenType.VAR);
+		case 'w': return keyword("while", TokenType.WHILE);
+		}
+		return TokenType.IDENTIFIER;
+	}
+	
+	//type when the identifier is text , the keyword is the lexeme of the token .
+	private TokenType keyword(String text,TokenType type) {
+		if(current - start != text.length()) return TokenType.IDENTIFIER;
+		for(int i = 1; i < text.length(); i++) {
+			if(buffer[start + i] != text.charAt(i)) return TokenType.IDENTIFIER;
+		}
+		name = text;
+		return type;
+	}
 	private boolean isDigit(char c) {
 		return c>='0' && c<='9';
 	}
@@ -0,0 +1,51 @@
+package lox;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/* a script that runs on the bytecode engine in slices , so many scripts can share a few threads (e.g. a thread pool) .
+ * every slice resumes the script for a budget of safe points (check VM.resume) , then the task submits itself to the executor
+ * again and gives the thread back to the other scripts . the frames of a suspended script are on the heap of its own vm ,
+ * so it holds no thread while it waits . the future completes with the result of the script , or with the error that stopped it .
+ */
+public final class ScriptTask implements Runnable {
+	private final VM vm = new VM();
+	private final Executor executor;
+	private final int budget;
+	private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+	private ScriptTask(VM.Function script,Executor executor,int budget) {
+		this.executor = executor;
+		this.budget = budget;
+		vm.start(script);
+	}
+
+	//compiles the source on the calling thread (the compile errors are reported like Lox reports them) and runs it on the executor .
+	public static CompletableFuture<Object> submit(String source,Executor executor,int budget) {
+		if(budget <= 0) throw new IllegalArgumentException("The budget must be positive.");
+		VM.Function script = Lox.compile(source);
+		if(script == null) {
+			CompletableFuture<Object> failed = new CompletableFuture<>();
+			failed.completeExceptionally(new IllegalArgumentException("The script has compile errors."));
+			return failed;
+		}
+		ScriptTask task = new ScriptTask(script,executor,budget);
+		executor.execute(task);
+		return task.result;
+	}
+
+	@Override
+	public void run() {
+		try {
+			if(vm.resume(budget)) {
+				result.complete(vm.result());
+			} else {
+				executor.execute(this);
+			}
+		} catch(Throwable e) {
+			//a runtime error , an error of the vm (a stack overflow ...) or an executor that rejects the next slice (it was shut down) ,
+			//the script can not go on and whoever waits for it gets the error .
+			result.completeExceptionally(e);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package lox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/* the layout of the fields of an instance (a hidden class) : the slot of LoxInstance.values that holds each field .
+ * instances that got the same fields in the same order share one shape , adding a field moves an instance to the next shape
+ * through a transition that is made once and then shared by all the instances that add that field .
+ * a shape never changes so a property access can keep the slot it found for the last shape it saw (check Expr.Get and Expr.Set) .
+ */
+final class Shape {
+	static final Shape EMPTY = new Shape(new HashMap<>());
+
+	private final Map<String,Integer> slots;
+	private final Map<String,Shape> transitions = new HashMap<>();
+
+	private Shape(Map<String,Integer> slots) {
+		this.slots = slots;
+	}
+
+	//the slot of the field name or -1 if the shape has no such field .
+	int slot(String name) {
+		Integer slot = slots.get(name);
+		return slot == null ? -1 : slot;
+	}
+
+	int size() {
+		return slots.size();
+	}
+
+	//the shape of an instance of this shape after the field name is added to it , the new field takes the next slot .
+	//the shapes are shared by every interpreter , like the global indexes (check Environment.index) , the interpreters of other threads may add the same field at the same time .
+	synchronized Shape with(String name) {
+		Shape next = transitions.get(name);
+		if(next == null) {
+			Map<String,Integer> grown = new HashMap<>(slots);
+			grown.put(name, slots.size());
+			next = new Shape(grown);
+			transitions.put(name, next);
+		}
+		return next;
+	}
+}
@@ -41,6 +41,7 @@ abstract class Stmt {
 
      final Token paren;
      final List<Stmt> statements;
+     boolean elided;
    }
 
  static class Function extends Stmt {
@@ -57,6 +58,9 @@ abstract class Stmt {
      final Token name ;
      final List<Token> parameters ;
      final List<Stmt> body;
+     int[] captures;
+     int[] boxedParameters;
+     boolean boxed;
    }
 
  static class Class extends Stmt {
@@ -75,6 +79,7 @@ abstract class Stmt {
      final Expr.Variable superClass ;
      final List<Stmt.Function> methods;
      final List<Stmt.Function> staticMethods;
+     boolean boxed;
    }
 
  static class If extends Stmt {
@@ -117,6 +122,7 @@ abstract class Stmt {
 
      final Token name;
      final Expr initializer;
+     boolean boxed;
    }
 
  static class While extends Stmt {
@@ -169,6 +175,7 @@ abstract class Stmt {
 
      final Token keyword;
      final Expr value;
+     boolean tailCall;
    }
 
 abstract <R> R accept(Visitor<R> visitor);
@@ -0,0 +1,53 @@
+package lox;
+
+/* the symbol table : one string for every name , shared by all the tokens of that name in every script .
+ * the scanner looks a name up by its characters (check Scanner.identifier) so it makes no string for a name it saw before ,
+ * and the string it gets is the one String.intern gives (e.g. the "init" of the interpreter is the same object) .
+ * the maps keyed by names (the shapes , the methods , the globals) then find a name by the hash the string computed once
+ * and compare it with == , equals never goes through the characters .
+ */
+final class Symbols {
+	private static String[] names = new String[1024];
+	private static int count = 0;
+
+	private Symbols() {}
+
+	//the symbol of the length characters at start in chars .
+	static synchronized String intern(char[] chars,int start,int length) {
+		int hash = 0;
+		for(int i = start; i < start + length; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		int mask = names.length - 1;
+		int index = hash & mask;
+		for(String name = names[index]; name != null; name = names[index]) {
+			//the hash of a string is the same function of its characters , so most of the other names are skipped here .
+			if(name.hashCode() == hash && matches(name, chars, start, length)) return name;
+			index = (index + 1) & mask;
+		}
+		String name = new String(chars, start, length).intern();
+		names[index] = name;
+		if(++count * 2 > names.length) grow();
+		return name;
+	}
+
+	private static boolean matches(String name,char[] chars,int start,int length) {
+		if(name.length() != length) return false;
+		for(int i = 0; i < length; i++) {
+			if(name.charAt(i) != chars[start + i]) return false;
+		}
+		return true;
+	}
+
+	private static void grow() {
+		String[] grown = new String[names.length * 2];
+		int mask = grown.length - 1;
+		for(String name : names) {
+			if(name == null) continue;
+			int index = name.hashCode() & mask;
+			while(grown[index] != null) index = (index + 1) & mask;
+			grown[index] = name;
+		}
+		names = grown;
+	}
+}
@@ -0,0 +1,82 @@
+package lox;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/* the tokens of a source in parallel arrays (the type , where the lexeme starts in the source , its length and its line)
+ * instead of an object each : a token takes 13 bytes and adding one allocates nothing (check Scanner.scanAll) .
+ * the lexeme and the literal of a token are made from the source when they are asked for , and the parser makes
+ * the Token of a token only when it gets to it (check reader) , most of them are garbage right after .
+ */
+final class TokenBuffer {
+	private static final TokenType[] TYPES = TokenType.values();
+	private final char[] source;
+	private byte[] types = new byte[64];
+	private int[] starts = new int[64];
+	private int[] lengths = new int[64];
+	private int[] lines = new int[64];
+	private int count = 0;
+
+	TokenBuffer(char[] source) {
+		this.source = source;
+	}
+
+	void add(TokenType type,int start,int length,int line) {
+		if(count == types.length) {
+			int capacity = count * 2;
+			types = Arrays.copyOf(types, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+		}
+		types[count] = (byte) type.ordinal();
+		starts[count] = start;
+		lengths[count] = length;
+		lines[count] = line;
+		count++;
+	}
+
+	int size() {
+		return count;
+	}
+
+	TokenType type(int index) {
+		return TYPES[types[index]];
+	}
+
+	int line(int index) {
+		return lines[index];
+	}
+
+	//the lexeme of a name is its symbol , it is not made again .
+	String lexeme(int index) {
+		if(lengths[index] > 0 && isNameStart(source[starts[index]])) return Symbols.intern(source, starts[index], lengths[index]);
+		return new String(source, starts[index], lengths[index]);
+	}
+
+	private static boolean isNameStart(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+	}
+
+	Object literal(int index) {
+		return Scanner.literal(source, type(index), starts[index], lengths[index]);
+	}
+
+	Token token(int index) {
+		return new Token(type(index), lexeme(index), literal(index), lines[index]);
+	}
+
+	//the tokens one after the other as the parser asks for them , the last one (EOF) is repeated .
+	Supplier<Token> reader() {
+		return new Supplier<Token>() {
+			private int next = 0;
+
+			@Override
+			public Token get() {
+				Token token = token(next);
+				if(next < count - 1) next++;
+				return token;
+			}
+		};
+	}
+}
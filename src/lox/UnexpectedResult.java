@@ -0,0 +1,14 @@
+package lox;
+
+/* thrown by the numeric evaluation (check Interpreter.evaluateNumber) when an expression does not produce a number ,
+ * it carries the value so the caller can fall back to the generic path without evaluating the expression again .
+ */
+@SuppressWarnings("serial")
+class UnexpectedResult extends RuntimeException {
+	final Object value; 
+
+	UnexpectedResult(Object value){
+		super(null,null,false,false); 
+		this.value = value; 
+	}
+}
@@ -0,0 +1,711 @@
+package lox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/* a stack based virtual machine that runs the bytecode produced by the Compiler , it is an alternative to the Interpreter (the reference engine) .
+ * all the instructions are executed in a single dispatch loop (run) , the operands are kept in an explicit stack and every call pushes a frame
+ * that remembers the function , its instruction pointer and where its locals start in the stack .
+ * both stacks are on the heap and grow as needed , so a lox call never makes a java call : the recursion depth is limited by memory only ,
+ * and a script can be suspended at a safe point and resumed later (check resume and ScriptTask) .
+ * the runtime objects of this engine (functions , closures , classes , instances ...) are nested in this class .
+ */
+public class VM {
+	private Object[] stack = new Object[256];
+	private int sp = 0;
+	private CallFrame[] frames = new CallFrame[64];
+	private int frameCount = 0;
+	private Upvalue openUpvalues = null;
+	private final Map<String,Object> globals = new HashMap<>();
+	//how many safe points the running script may still pass before it is suspended (check resume) .
+	private int budget = 0;
+	private Object result = null;
+	//returned by run when the script was suspended , it is not a value of the language .
+	private static final Object SUSPENDED = new Object();
+
+	public VM() {
+		globals.put("clock", new Native("clock",0) {
+			@Override
+			Object call(Object[] stack,int first) {
+				return (double) System.currentTimeMillis()/1000.0 ;
+			}
+		});
+	}
+
+	//a compiled function , it has no state so it is shared by all the closures created from it .
+	static final class Function {
+		final String name;
+		final int arity;
+		final Chunk chunk = new Chunk();
+		int upvalueCount = 0;
+		//the most values a call of this function keeps on the stack (its locals and temporaries) , computed by the compiler .
+		int maxStack = 1;
+
+		Function(String name,int arity){
+			this.name = name;
+			this.arity = arity;
+		}
+
+		@Override
+		public String toString() {
+			return "<fn " + name + " >";
+		}
+	}
+
+	static final class Closure {
+		final Function function;
+		final Upvalue[] upvalues;
+
+		Closure(Function function){
+			this.function = function;
+			this.upvalues = new Upvalue[function.upvalueCount];
+		}
+
+		@Override
+		public String toString() {
+			return function.toString();
+		}
+	}
+
+	//a captured variable , it points to a stack slot while the variable is alive and holds the value after it goes out of scope .
+	static final class Upvalue {
+		final int slot;
+		Object closed;
+		boolean isClosed = false;
+		Upvalue next;
+
+		Upvalue(int slot,Upvalue next){
+			this.slot = slot;
+			this.next = next;
+		}
+	}
+
+	static class Instance {
+		final Klass klass;
+		final Map<String,Object> fields = new HashMap<>();
+
+		Instance(Klass klass){
+			this.klass = klass;
+		}
+
+		@Override
+		public String toString() {
+			return klass.name + " instance";
+		}
+	}
+
+	//methods holds the inherited methods too (they are copied when the class inherits) , static methods are looked up through the superclass chain like in LoxClass .
+	static final class Klass extends Instance {
+		final String name;
+		Klass superClass = null;
+		final Map<String,Closure> methods = new HashMap<>();
+		final Map<String,Closure> staticMethods = new HashMap<>();
+
+		Klass(String name){
+			super(null);
+			this.name = name;
+		}
+
+		Object getStatic(String name) {
+			if(fields.containsKey(name)) return fields.get(name);
+			Closure method = staticMethods.get(name);
+			if(method != null) return method;
+			if(superClass != null) return superClass.getStatic(name);
+			throw new RuntimeError(null,"Undefined static property " + name + " .");
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	static final class BoundMethod {
+		final Object receiver;
+		final Closure method;
+
+		BoundMethod(Object receiver,Closure method){
+			this.receiver = receiver;
+			this.method = method;
+		}
+
+		@Override
+		public String toString() {
+			return method.toString();
+		}
+	}
+
+	//a function implemented in java , its arguments are in the stack starting from first .
+	static abstract class Native {
+		final String name;
+		final int arity;
+
+		Native(String name,int arity){
+			this.name = name;
+			this.arity = arity;
+		}
+
+		abstract Object call(Object[] stack,int first);
+
+		@Override
+		public String toString() {
+			return "<native fn " + name + " >";
+		}
+	}
+
+	private static final class CallFrame {
+		Closure closure;
+		int ip;
+		int base;
+	}
+
+	public Object interpret(Function script) {
+		try {
+			start(script);
+			while(!resume(Integer.MAX_VALUE)) {
+				//the budget ran out , the script goes on with a new one .
+			}
+			return result;
+		} catch(RuntimeError e) {
+			Lox.runtimeError(e);
+			return null;
+		}
+	}
+
+	//prepares the script to run , it runs when it is resumed . the globals of the previous scripts stay .
+	void start(Function script) {
+		sp = 0;
+		frameCount = 0;
+		openUpvalues = null;
+		result = null;
+		Closure closure = new Closure(script);
+		stack[sp++] = closure;
+		call(closure,0);
+	}
+
+	/* runs the started script until it ends or until it passes budget safe points , returns true when it ended (check result) .
+	 * the safe points are the backward jumps and the calls , so a script can not run long without passing one .
+	 * a suspended script keeps its state in the stacks of this vm , resume goes on from where it stopped .
+	 * a runtime error ends the script (it can not be resumed) and is thrown to the caller .
+	 */
+	boolean resume(int budget) {
+		if(frameCount == 0) return true;
+		this.budget = budget;
+		try {
+			Object value = run();
+			if(value == SUSPENDED) return false;
+			result = value;
+			return true;
+		} catch(RuntimeError e) {
+			sp = 0;
+			frameCount = 0;
+			openUpvalues = null;
+			throw e;
+		}
+	}
+
+	//what the script returned , once resume returned true .
+	Object result() {
+		return result;
+	}
+
+	/* the dispatch loop , the stack , the stack pointer and the code of the current frame are kept in locals while it runs ,
+	 * they are written back to the fields (or read again) around the helpers that use the fields (calls , upvalues) .
+	 * the stack of a frame is reserved when it is called (check call) so pushing never checks the capacity .
+	 * at a safe point with no budget left the state is written back and SUSPENDED is returned , run starts again from the fields .
+	 */
+	private Object run() {
+		CallFrame frame = frames[frameCount - 1];
+		byte[] code = frame.closure.function.chunk.code;
+		Object[] constants = frame.closure.function.chunk.constants;
+		Object[] stack = this.stack;
+		int sp = this.sp;
+		int base = frame.base;
+		int ip = frame.ip;
+		int budget = this.budget;
+		try {
+			for(;;) {
+				switch(code[ip++]) {
+				case OpCode.CONSTANT:
+					stack[sp++] = constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+					ip += 2;
+					break;
+				case OpCode.NIL: stack[sp++] = null; break;
+				case OpCode.TRUE: stack[sp++] = Boolean.TRUE; break;
+				case OpCode.FALSE: stack[sp++] = Boolean.FALSE; break;
+				case OpCode.POP: stack[--sp] = null; break;
+				case OpCode.GET_LOCAL:
+					stack[sp] = stack[base + (code[ip++] & 0xff)];
+					sp++;
+					break;
+				case OpCode.SET_LOCAL:
+					stack[base + (code[ip++] & 0xff)] = stack[sp - 1];
+					break;
+				case OpCode.GET_GLOBAL: {
+					String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+					ip += 2;
+					Object value = globals.get(name);
+					if(value == null && !globals.containsKey(name)) {
+						throw new RuntimeError(null,"Undefined varaible '" + name + "'.");
+					}
+					stack[sp++] = value;
+					break;
+				}
+				case OpCode.DEFINE_GLOBAL: {
+					String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+					ip += 2;
+					globals.put(name, stack[--sp]);
+					stack[sp] = null;
+					break;
+				}
+				case OpCode.SET_GLOBAL: {
+					String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+					ip += 2;
+					if(!globals.containsKey(name)) {
+						throw new RuntimeError(null,"Undefined varaible '" + name + "'.");
+					}
+					globals.put(name, stack[sp - 1]);
+					break;
+				}
+				case OpCode.GET_UPVALUE: {
+					Upvalue upvalue = frame.closure.upvalues[code[ip++] & 0xff];
+					stack[sp] = upvalue.isClosed ? upvalue.closed : stack[upvalue.slot];
+					sp++;
+					break;
+				}
+				case OpCode.SET_UPVALUE: {
+					Upvalue upvalue = frame.closure.upvalues[code[ip++] & 0xff];
+					if(upvalue.isClosed) upvalue.closed = stack[sp - 1];
+					else stack[upvalue.slot] = stack[sp - 1];
+					break;
+				}
+				case OpCode.GET_PROPERTY: {
+					String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+					ip += 2;
+					Object object = stack[sp - 1];
+					if(object instanceof Klass) {
+						stack[sp - 1] = ((Klass) object).getStatic(name);
+					} else if(object instanceof Instance) {
+						Instance instance = (Instance) object;
+						Object value = instance.fields.get(name);
+						if(value != null || instance.fields.containsKey(name)) {
+							stack[sp - 1] = value;
+						} else {
+							stack[sp - 1] = bindMethod(instance.klass,instance,name);
+						}
+					} else {
+						throw new RuntimeError(null,"Only Instances has fields .");
+					}
+					break;
+				}
+				case OpCode.SET_PROPERTY: {
+					String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+					ip += 2;
+					Object object = stack[sp - 2];
+					if(!(object instanceof Instance)) {
+						throw new RuntimeError(null,"Only instances have fields.");
+					}
+					Object value = stack[--sp];
+					stack[sp] = null;
+					((Instance) object).fields.put(name, value);
+					stack[sp - 1] = value;
+					break;
+				}
+				case OpCode.GET_SUPER: {
+					String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+					ip += 2;
+					Klass superClass = (Klass) stack[--sp];
+					stack[sp] = null;
+					stack[sp - 1] = bindMethod(superClass,stack[sp - 1],name);
+					break;
+				}
+				case OpCode.EQUAL:
+					stack[sp - 2] = isEqual(stack[sp - 2],stack[sp - 1]);
+					stack[--sp] = null;
+					break;
+				case OpCode.NOT_EQUAL:
+					stack[sp - 2] = !isEqual(stack[sp - 2],stack[sp - 1]);
+					stack[--sp] = null;
+					break;
+				case OpCode.GREATER:
+					checkNumberOperands(stack[sp - 2],stack[sp - 1]);
+					stack[sp - 2] = (double) stack[sp - 2] > (double) stack[sp - 1];
+					stack[--sp] = null;
+					break;
+				case OpCode.GREATER_EQUAL:
+					checkNumberOperands(stack[sp - 2],stack[sp - 1]);
+					stack[sp - 2] = (double) stack[sp - 2] >= (double) stack[sp - 1];
+					stack[--sp] = null;
+					break;
+				case OpCode.LESS:
+					checkNumberOperands(stack[sp - 2],stack[sp - 1]);
+					stack[sp - 2] = (double) stack[sp - 2] < (double) stack[sp - 1];
+					stack[--sp] = null;
+					break;
+				case OpCode.LESS_EQUAL:
+					checkNumberOperands(stack[sp - 2],stack[sp - 1]);
+					stack[sp - 2] = (double) stack[sp - 2] <= (double) stack[sp - 1];
+					stack[--sp] = null;
+					break;
+				case OpCode.ADD: {
+					Object left = stack[sp - 2];
+					Object right = stack[sp - 1];
+					if(left instanceof Double && right instanceof Double) {
+						stack[sp - 2] = (double) left + (double) right;
+					} else if(left instanceof String && right instanceof String) {
+						stack[sp - 2] = (String) left + (String) right;
+					} else if(left instanceof String && right instanceof Double) {
+						stack[sp - 2] = (String) left + (double) right;
+					} else if(left instanceof Double && right instanceof String) {
+						stack[sp - 2] = (double) left + (String) right;
+					} else {
+						stack[sp - 2] = null;
+					}
+					stack[--sp] = null;
+					break;
+				}
+				case OpCode.SUBTRACT:
+					checkNumberOperands(stack[sp - 2],stack[sp - 1]);
+					stack[sp - 2] = (double) stack[sp - 2] - (double) stack[sp - 1];
+					stack[--sp] = null;
+					break;
+				case OpCode.MULTIPLY:
+					checkNumberOperands(stack[sp - 2],stack[sp - 1]);
+					stack[sp - 2] = (double) stack[sp - 2] * (double) stack[sp - 1];
+					stack[--sp] = null;
+					break;
+				case OpCode.DIVIDE:
+					checkNumberOperands(stack[sp - 2],stack[sp - 1]);
+					if((double) stack[sp - 1] == 0) {
+						throw new RuntimeError(null,"Division by zero is not allowed.");
+					}
+					stack[sp - 2] = (double) stack[sp - 2] / (double) stack[sp - 1];
+					stack[--sp] = null;
+					break;
+				case OpCode.BITWISE_AND:
+					checkNumberOperands(stack[sp - 2],stack[sp - 1]);
+					stack[sp - 2] = (double) (((Double) stack[sp - 2]).intValue() & ((Double) stack[sp - 1]).intValue());
+					stack[--sp] = null;
+					break;
+				case OpCode.BITWISE_OR:
+					checkNumberOperands(stack[sp - 2],stack[sp - 1]);
+					stack[sp - 2] = (double) (((Double) stack[sp - 2]).intValue() | ((Double) stack[sp - 1]).intValue());
+					stack[--sp] = null;
+					break;
+				case OpCode.XOR:
+					checkNumberOperands(stack[sp - 2],stack[sp - 1]);
+					stack[sp - 2] = (double) (((Double) stack[sp - 2]).intValue() ^ ((Double) stack[sp - 1]).intValue());
+					stack[--sp] = null;
+					break;
+				case OpCode.NOT:
+					stack[sp - 1] = !isTruthy(stack[sp - 1]);
+					break;
+				case OpCode.NEGATE:
+					if(!(stack[sp - 1] instanceof Double)) {
+						throw new RuntimeError(null,"Operand must be a number");
+					}
+					stack[sp - 1] = -(double) stack[sp - 1];
+					break;
+				case OpCode.PRINT:
+					System.out.println(stringify(stack[--sp]));
+					stack[sp] = null;
+					break;
+				case OpCode.JUMP:
+					ip += (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)) + 2;
+					break;
+				case OpCode.JUMP_IF_FALSE:
+					if(!isTruthy(stack[sp - 1])) {
+						ip += (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)) + 2;
+					} else {
+						ip += 2;
+					}
+					break;
+				case OpCode.LOOP:
+					ip -= (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)) - 2;
+					if(--budget == 0) {
+						frame.ip = ip;
+						this.sp = sp;
+						return SUSPENDED;
+					}
+					break;
+				case OpCode.CALL: {
+					int args = code[ip++] & 0xff;
+					frame.ip = ip;
+					this.sp = sp;
+					callValue(stack[sp - args - 1],args);
+					frame = frames[frameCount - 1];
+					code = frame.closure.function.chunk.code;
+					constants = frame.closure.function.chunk.constants;
+					stack = this.stack;
+					sp = this.sp;
+					base = frame.base;
+					ip = frame.ip;
+					if(--budget == 0) {
+						frame.ip = ip;
+						return SUSPENDED;
+					}
+					break;
+				}
+				case OpCode.INVOKE: {
+					String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+					int args = code[ip + 2] & 0xff;
+					ip += 3;
+					frame.ip = ip;
+					this.sp = sp;
+					invoke(name,args);
+					frame = frames[frameCount - 1];
+					code = frame.closure.function.chunk.code;
+					constants = frame.closure.function.chunk.constants;
+					stack = this.stack;
+					sp = this.sp;
+					base = frame.base;
+					ip = frame.ip;
+					if(--budget == 0) {
+						frame.ip = ip;
+						return SUSPENDED;
+					}
+					break;
+				}
+				case OpCode.SUPER_INVOKE: {
+					String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+					int args = code[ip + 2] & 0xff;
+					ip += 3;
+					frame.ip = ip;
+					Klass superClass = (Klass) stack[--sp];
+					stack[sp] = null;
+					this.sp = sp;
+					invokeFromClass(superClass,name,args);
+					frame = frames[frameCount - 1];
+					code = frame.closure.function.chunk.code;
+					constants = frame.closure.function.chunk.constants;
+					stack = this.stack;
+					sp = this.sp;
+					base = frame.base;
+					ip = frame.ip;
+					if(--budget == 0) {
+						frame.ip = ip;
+						return SUSPENDED;
+					}
+					break;
+				}
+				case OpCode.CLOSURE: {
+					Function function = (Function) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+					ip += 2;
+					Closure closure = new Closure(function);
+					for(int i = 0; i < closure.upvalues.length; i++) {
+						boolean isLocal = code[ip++] == 1;
+						int index = code[ip++] & 0xff;
+						closure.upvalues[i] = isLocal ? captureUpvalue(base + index) : frame.closure.upvalues[index];
+					}
+					stack[sp++] = closure;
+					break;
+				}
+				case OpCode.CLOSE_UPVALUE:
+					closeUpvalues(sp - 1);
+					stack[--sp] = null;
+					break;
+				case OpCode.RETURN: {
+					Object result = stack[sp - 1];
+					closeUpvalues(base);
+					frameCount--;
+					for(int i = base; i < sp; i++) stack[i] = null;
+					sp = base;
+					if(frameCount == 0) {
+						this.sp = sp;
+						return result;
+					}
+					stack[sp++] = result;
+					frame = frames[frameCount - 1];
+					code = frame.closure.function.chunk.code;
+					constants = frame.closure.function.chunk.constants;
+					base = frame.base;
+					ip = frame.ip;
+					break;
+				}
+				case OpCode.CLASS:
+					stack[sp++] = new Klass((String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)]);
+					ip += 2;
+					break;
+				case OpCode.INHERIT: {
+					Object superClass = stack[sp - 2];
+					if(!(superClass instanceof Klass)) {
+						throw new RuntimeError(null,"Super Class must be a class. ");
+					}
+					Klass subClass = (Klass) stack[--sp];
+					stack[sp] = null;
+					subClass.superClass = (Klass) superClass;
+					subClass.methods.putAll(((Klass) superClass).methods);
+					break;
+				}
+				case OpCode.METHOD: {
+					String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+					ip += 2;
+					Closure method = (Closure) stack[--sp];
+					stack[sp] = null;
+					((Klass) stack[sp - 1]).methods.put(name, method);
+					break;
+				}
+				case OpCode.STATIC_METHOD: {
+					String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+					ip += 2;
+					Closure method = (Closure) stack[--sp];
+					stack[sp] = null;
+					((Klass) stack[sp - 1]).staticMethods.put(name, method);
+					break;
+				}
+				default:
+					throw new RuntimeError(null,"Unknown instruction " + code[ip - 1] + ".");
+				}
+			}
+		} catch(RuntimeError e) {
+			if(e.token != null) throw e;
+			//the helpers do not know the line , it is the line of the instruction that failed .
+			int line = frame.closure.function.chunk.lines[Math.max(ip - 1, 0)];
+			throw new RuntimeError(new Token(TokenType.EOF,"",null,line),e.getMessage());
+		}
+	}
+
+	//calls the value with the arguments on top of the stack , a function pushes a new frame and the others leave their result in place of the callee .
+	private void callValue(Object callee,int args) {
+		if(callee instanceof Closure) {
+			call((Closure) callee,args);
+		} else if(callee instanceof BoundMethod) {
+			BoundMethod bound = (BoundMethod) callee;
+			stack[sp - args - 1] = bound.receiver;
+			call(bound.method,args);
+		} else if(callee instanceof Klass) {
+			Klass klass = (Klass) callee;
+			stack[sp - args - 1] = new Instance(klass);
+			Closure init = klass.methods.get("init");
+			if(init != null) {
+				call(init,args);
+			} else if(args != 0) {
+				throw new RuntimeError(null,"Expect 0 arguments but got " + args + " arguments.");
+			}
+		} else if(callee instanceof Native) {
+			Native fun = (Native) callee;
+			if(fun.arity != args) {
+				throw new RuntimeError(null,"Expect " + fun.arity + " arguments but got " + args + " arguments.");
+			}
+			Object result = fun.call(stack,sp - args);
+			for(int i = sp - args; i < sp; i++) stack[i] = null;
+			sp -= args;
+			stack[sp - 1] = result;
+		} else {
+			throw new RuntimeError(null,"only functions and classed are callable.");
+		}
+	}
+
+	private void call(Closure closure,int args) {
+		if(closure.function.arity != args) {
+			throw new RuntimeError(null,"Expect " + closure.function.arity + " arguments but got " + args + " arguments.");
+		}
+		int base = sp - args - 1;
+		if(base + closure.function.maxStack > stack.length) {
+			stack = Arrays.copyOf(stack, Math.max(stack.length * 2, base + closure.function.maxStack));
+		}
+		if(frameCount == frames.length) {
+			CallFrame[] grown = new CallFrame[frameCount * 2];
+			System.arraycopy(frames, 0, grown, 0, frameCount);
+			frames = grown;
+		}
+		CallFrame frame = frames[frameCount];
+		if(frame == null) {
+			frame = new CallFrame();
+			frames[frameCount] = frame;
+		}
+		frameCount++;
+		frame.closure = closure;
+		frame.ip = 0;
+		frame.base = base;
+	}
+
+	private void invoke(String name,int args) {
+		Object receiver = stack[sp - args - 1];
+		if(receiver instanceof Klass) {
+			callValue(((Klass) receiver).getStatic(name),args);
+			return;
+		}
+		if(!(receiver instanceof Instance)) {
+			throw new RuntimeError(null,"Only Instances has fields .");
+		}
+		Instance instance = (Instance) receiver;
+		Object field = instance.fields.get(name);
+		if(field != null || instance.fields.containsKey(name)) {
+			stack[sp - args - 1] = field;
+			callValue(field,args);
+			return;
+		}
+		invokeFromClass(instance.klass,name,args);
+	}
+
+	private void invokeFromClass(Klass klass,String name,int args) {
+		Closure method = klass.methods.get(name);
+		if(method == null) {
+			throw new RuntimeError(null,"Undefined property '" + name + "' .");
+		}
+		call(method,args);
+	}
+
+	private BoundMethod bindMethod(Klass klass,Object receiver,String name) {
+		Closure method = klass.methods.get(name);
+		if(method == null) {
+			throw new RuntimeError(null,"Undefined property '" + name + "' .");
+		}
+		return new BoundMethod(receiver,method);
+	}
+
+	private Upvalue captureUpvalue(int slot) {
+		Upvalue previous = null;
+		Upvalue upvalue = openUpvalues;
+		while(upvalue != null && upvalue.slot > slot) {
+			previous = upvalue;
+			upvalue = upvalue.next;
+		}
+		if(upvalue != null && upvalue.slot == slot) return upvalue;
+		Upvalue created = new Upvalue(slot,upvalue);
+		if(previous == null) {
+			openUpvalues = created;
+		} else {
+			previous.next = created;
+		}
+		return created;
+	}
+
+	private void closeUpvalues(int last) {
+		while(openUpvalues != null && openUpvalues.slot >= last) {
+			Upvalue upvalue = openUpvalues;
+			upvalue.closed = stack[upvalue.slot];
+			upvalue.isClosed = true;
+			openUpvalues = upvalue.next;
+		}
+	}
+
+	private static void checkNumberOperands(Object left,Object right) {
+		if(!(left instanceof Double) || !(right instanceof Double)) {
+			throw new RuntimeError(null,"Operands must be two numbers or two strings . ");
+		}
+	}
+
+	private static boolean isTruthy(Object value) {
+		if (value == null)
+			return false;
+		if (value instanceof Boolean)
+			return (boolean)value;
+		return true;
+	}
+
+	private static boolean isEqual(Object x,Object y) {
+		if (x == null && y == null)
+			return true;
+		if (x  == null)
+			return false;
+		return x.equals(y);
+	}
+
+	private static String stringify(Object value) {
+		if(value == null) return "nil";
+		return value.toString();
+	}
+}
@@ -15,33 +15,33 @@ public static void main(String[] args)  {
 	} 
 	    String outputDir = args[0];//output dir is the directory of the project classes.
 	    try {
-	    defineAst(outputDir,"Expr",Arrays.asList("Binary : Expr left, Token operator, Expr right",
-	    										"Assign : Token name, Expr value",
+	    defineAst(outputDir,"Expr",Arrays.asList("Binary : Expr left, Token operator, Expr right | BinaryNode node = BinaryNode.UNINITIALIZED",
+	    										"Assign : Token name, Expr value | Location local, int global = -1",
 	    		                                "Grouping : Expr expression",
 	    		                                "Literal : Object value",
 	    		                                "Unary : Token operator, Expr right",
 	    		                                "Ternary : Expr condition, Expr first, Expr second",
-	    		                                "Variable : Token name", 
+	    		                                "Variable : Token name | Location local, int global = -1", 
 	    		                                "Logical : Expr left, Token operator , Expr right",
 	    		                                "Call : Expr calle , Token paren , List<Expr> args",
-	    		                                "FunExpr  : Token paren, List<Token> parameters, List<Stmt> body",
-	    		                                "Get : Expr object , Token name",
-	    		                                "Set : Expr object , Token name , Expr value",
-	    		                                "This : Token keyword", 
-	    		                                "Super : Token keyword , Token method"
+	    		                                "FunExpr  : Token paren, List<Token> parameters, List<Stmt> body | int[] captures, int[] boxedParameters",
+	    		                                "Get : Expr object , Token name | InlineCache cache = new InlineCache(), Shape shape, int slot, LoxClass owner, Object member, int version",
+	    		                                "Set : Expr object , Token name , Expr value | Shape shape, Shape next, int slot",
+	    		                                "This : Token keyword | Location local", 
+	    		                                "Super : Token keyword , Token method | Location local, Location receiver, LoxClass superclass, LoxFunction target"
 	    		                                ));
 	    defineAst(outputDir, "Stmt", Arrays. asList(
 	    		"Expression : Expr expression",
-	    		"Block : Token paren, List<Stmt> statements",
-	    		"Function : Token name , List<Token> parameters , List<Stmt> body",
-	    		"Class : Token name , Expr.Variable superClass , List<Stmt.Function> methods, List<Stmt.Function> staticMethods ",
+	    		"Block : Token paren, List<Stmt> statements | boolean elided",
+	    		"Function : Token name , List<Token> parameters , List<Stmt> body | int[] captures, int[] boxedParameters, boolean boxed",
+	    		"Class : Token name , Expr.Variable superClass , List<Stmt.Function> methods, List<Stmt.Function> staticMethods | boolean boxed",
 	    		"If : Expr condition, Stmt thenStmt, Stmt elseStmt", 
 	    		"Print : Expr expression",
-	    		"Var  : Token name, Expr initializer",
+	    		"Var  : Token name, Expr initializer | boolean boxed",
 	    		 "While : Expr condition, Stmt Body",
 	    		 "Break : Token name",
 	    		 "Continue: Token name",
-	    		 "Return : Token keyword, Expr value"
+	    		 "Return : Token keyword, Expr value | boolean tailCall"
 	    		) ) ;  }
 	    	catch (IOException i){
 	    		System.out.println(i);
@@ -84,7 +84,13 @@ public static void defineVisitor(PrintWriter writer,String baseName,List<String>
     
     writer.println("  }");
 }
+//fields after '|' are not passed to the constructor and are not final , the interpreter keeps its runtime state of the node in them .
 public static void defineType(PrintWriter writer,String baseName,String className,String fieldList) throws IOException{
+	String[] extraFields = new String[0];
+	if(fieldList.contains("|")) {
+		extraFields = fieldList.split("\\|")[1].trim().split(", ");
+		fieldList = fieldList.split("\\|")[0].trim();
+	}
 	writer.println("");
 	writer.println(" static class "+className+ " extends "+baseName + " {");
 	
@@ -106,6 +112,9 @@ public static void defineType(PrintWriter writer,String baseName,String classNam
 	for(String field : fields ) {
 		writer.println("     final " + field + ";");
 	}
+	for(String field : extraFields ) {
+		writer.println("     " + field + ";");
+	}
 	
 	writer.println("   }");
 }
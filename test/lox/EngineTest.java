@@ -0,0 +1,101 @@
+package lox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/* runs every program of test/programs on the tree-walk interpreter (the reference engine) and on the other engines ,
+ * and checks that they print the same output and exit with the same status (some programs end with a runtime error) .
+ * the syntax tree cache (check AstCache) is checked the same way , a program must run the same from the tree it loads .
+ * every run is a new process (java lox.Lox [flags] program) , the engines and the error flags of Lox are static .
+ */
+@RunWith(Parameterized.class)
+public class EngineTest {
+	private static final File PROGRAMS = new File("test/programs");
+	//the output of the interpreter for every program , it is run once for all the engines .
+	private static final Map<File,String> reference = new HashMap<>();
+
+	private final File program;
+
+	@Rule
+	public final TemporaryFolder cache = new TemporaryFolder();
+
+	public EngineTest(String name) {
+		this.program = new File(PROGRAMS, name);
+	}
+
+	@Parameters(name = "{0}")
+	public static List<Object[]> programs() {
+		String[] names = PROGRAMS.list((dir, name) -> name.endsWith(".lox"));
+		if(names == null || names.length == 0) throw new IllegalStateException("no programs in " + PROGRAMS);
+		Arrays.sort(names);
+		List<Object[]> programs = new ArrayList<>();
+		for(String name : names) programs.add(new Object[] {name});
+		return programs;
+	}
+
+	@Test
+	public void vm() throws Exception {
+		assertEquals(reference(), run("--vm"));
+	}
+
+	//the first run parses the program and stores its tree , the next ones run the tree they load (on both engines) .
+	@Test
+	public void cache() throws Exception {
+		String directory = cache.getRoot().getPath();
+		assertEquals(reference(), run("--cache", directory));
+		File[] entries = cache.getRoot().listFiles();
+		assertEquals(1, entries.length);
+		assertNotNull(AstCache.load(entries[0].toPath()));
+		assertEquals(reference(), run("--cache", directory));
+		assertEquals(reference(), run("--vm", "--cache", directory));
+	}
+
+	private String reference() throws Exception {
+		String output = reference.get(program);
+		if(output == null) {
+			output = run();
+			reference.put(program, output);
+		}
+		return output;
+	}
+
+	//the output of the program (stdout and stderr as they were printed) and then its exit status .
+	private String run(String... flags) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("lox.Lox");
+		command.addAll(Arrays.asList(flags));
+		command.add(program.getPath());
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try(InputStream input = process.getInputStream()) {
+			byte[] buffer = new byte[4096];
+			int read;
+			while((read = input.read(buffer)) != -1) {
+				output.write(buffer, 0, read);
+			}
+		}
+		int status = process.waitFor();
+		return new String(output.toByteArray(), Charset.defaultCharset()) + "exit " + status;
+	}
+}